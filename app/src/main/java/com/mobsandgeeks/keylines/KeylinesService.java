@@ -16,6 +16,8 @@
 
 package com.mobsandgeeks.keylines;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.app.Notification;
 import android.app.NotificationManager;
@@ -23,25 +25,53 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.PixelFormat;
+import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IdRes;
 import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
 import android.support.v4.util.Pair;
+import android.support.v4.view.ViewCompat;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.RemoteViews;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.lucasr.dspec.Spec;
+import org.lucasr.dspec.SpecCodec;
 import org.lucasr.dspec.SpecDrawable;
+import org.lucasr.dspec.SpecParseException;
 import org.lucasr.dspec.SpecParser;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 import timber.log.Timber;
 
 import static com.mobsandgeeks.keylines.Shared.NAMESPACE_ACTION;
 import static com.mobsandgeeks.keylines.Shared.NAMESPACE_EXTRA;
+import static com.mobsandgeeks.keylines.exposed.StethoscopeService.MSG_REQUEST_SPEC;
 
 /**
  * @author Ragunath Jawahar
@@ -50,18 +80,47 @@ public class KeylinesService extends Service {
 
     // Constants
     private static final int NOTIFICATION_ID = 0X524A; // Being 'Narcissistic'
+    private static final String DUMP_ARG_RESET = "--reset";
+    private static final int SPEC_CACHE_SIZE = 16;
+    private static final long SPEC_DEBOUNCE_MILLIS = 32;
 
     // Actions
     public static final String ACTION_SHOW = NAMESPACE_ACTION + ".SHOW";
     public static final String ACTION_STOP = NAMESPACE_ACTION + ".STOP";
+    public static final String ACTION_HIGHLIGHT = NAMESPACE_ACTION + ".HIGHLIGHT";
 
     // Extras
     public static final String EXTRA_SPEC = NAMESPACE_EXTRA + ".SPEC";
+    public static final String EXTRA_SPEC_BYTES = NAMESPACE_EXTRA + ".SPEC_BYTES";
+    public static final String EXTRA_SPEC_HASH = NAMESPACE_EXTRA + ".SPEC_HASH";
+    public static final String EXTRA_SPEC_DESCRIPTOR = NAMESPACE_EXTRA + ".SPEC_DESCRIPTOR";
+    public static final String EXTRA_SPEC_BASE_HASH = NAMESPACE_EXTRA + ".SPEC_BASE_HASH";
+    public static final String EXTRA_SPEC_PATCH_REMOVED = NAMESPACE_EXTRA + ".SPEC_PATCH_REMOVED";
+    public static final String EXTRA_SPEC_PATCH_ADDED = NAMESPACE_EXTRA + ".SPEC_PATCH_ADDED";
+    public static final String EXTRA_VIOLATIONS = NAMESPACE_EXTRA + ".VIOLATIONS";
 
     // Attributes
+    private final LocalBinder binder = new LocalBinder();
     private SpecDrawable specDrawable;
     private View hostView;
     private WindowManager windowManager;
+    private ObjectAnimator fadeAnimator;
+    private boolean faded;
+    private boolean inspecting;
+
+    /**
+     * Parsed specs by the content hash the SDK computed for them. The SDK sends only the hash of a
+     * spec that was sent before, which is shown from here without parsing or compiling it again.
+     */
+    private final LruCache<Long, Spec> specCache = new LruCache<>(SPEC_CACHE_SIZE);
+
+    /**
+     * Show and stop commands, in order. Each one is a spec yet to be parsed on a background
+     * thread, a newer command unsubscribes from the one before it. A {@code null} spec stops.
+     */
+    private final PublishSubject<Observable<Spec>> specCommands = PublishSubject.create();
+    private final Scheduler mainThread = Schedulers.from(new Handler(Looper.getMainLooper())::post);
+    private Subscription specSubscription;
 
     private NotificationControlCenter notificationControlCenter;
     private Pair<Notification, RemoteViews> notificationRemoteViewsPair;
@@ -78,7 +137,26 @@ public class KeylinesService extends Service {
 
         // Add View to window
         windowManager = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
-        windowManager.addView(hostView, getLayoutParams(true));
+        windowManager.addView(hostView, getLayoutParams(true, false));
+
+        // Parse specs off the main thread, apply the latest one of a burst
+        specSubscription = Observable.switchOnNext(specCommands.onBackpressureLatest())
+                .distinctUntilChanged()
+                .debounce(SPEC_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+                .onBackpressureLatest()
+                .observeOn(mainThread)
+                .subscribe(spec -> {
+                    // Caught here, an error would end the subscription and freeze the overlay
+                    try {
+                        if (spec != null) {
+                            show(spec);
+                        } else {
+                            stop();
+                        }
+                    } catch (RuntimeException e) {
+                        Timber.e(e, "Unable to apply spec");
+                    }
+                }, throwable -> Timber.e(throwable, "Spec pipeline failed"));
 
         // Broadcast Receiver for handling actions from the foreground service Notification
         notificationControlCenter = new NotificationControlCenter();
@@ -91,17 +169,7 @@ public class KeylinesService extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        String action = intent.getAction();
-
-        if (ACTION_SHOW.equals(action)) {
-            String payload = intent.getExtras().getString(EXTRA_SPEC);
-            show(payload);
-        } else if (ACTION_STOP.equals(action)) {
-            stop();
-        } else if (action != null) {
-            throw new UnsupportedOperationException("Unknown action: " + action);
-        }
-
+        handleCommand(intent.getAction(), intent.getExtras(), null);
         return START_NOT_STICKY;
     }
 
@@ -109,6 +177,9 @@ public class KeylinesService extends Service {
     public void onDestroy() {
         super.onDestroy();
 
+        // Drop specs in flight
+        specSubscription.unsubscribe();
+
         // Destroy the view
         if (hostView != null) {
             windowManager.removeView(hostView);
@@ -124,7 +195,29 @@ public class KeylinesService extends Service {
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
-        return null; // No-op
+        return binder;
+    }
+
+    /**
+     * Prints overlay draw statistics. Run {@code adb shell dumpsys activity service
+     * com.mobsandgeeks.keylines/.KeylinesService}, append {@value #DUMP_ARG_RESET} to clear the
+     * statistics after printing them.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        boolean reset = false;
+        if (args != null) {
+            for (String arg : args) {
+                reset |= DUMP_ARG_RESET.equals(arg);
+            }
+        }
+
+        writer.println("KeylinesService");
+        writer.print("  hostView visible=");
+        writer.println(hostView != null && hostView.isShown());
+        if (specDrawable != null) {
+            specDrawable.dump(writer, "  ", reset);
+        }
     }
 
     void updateNotificationIcon(@IdRes int remoteViewId, @DrawableRes int drawableRes) {
@@ -145,13 +238,64 @@ public class KeylinesService extends Service {
         specDrawable.flipVertical(flip);
     }
 
+    /**
+     * Fades the spec in or out. The spec is rasterized once into a hardware layer (a bitmap on
+     * software windows) when the animation starts, so the frames in between only compose the
+     * layer. The layer is released when the animation ends or is cancelled.
+     */
     void visible(boolean visible) {
-        float from = visible ? 0.0f : 1.0f;
-        float to   = visible ? 1.0f : 0.0f;
-        ObjectAnimator fadeAnimator = ObjectAnimator.ofFloat(hostView, "alpha", from, to);
+        faded = !visible;
+        if (!visible) {
+            notificationControlCenter.stopInspecting(); // Nothing to measure, give touches back
+        }
+        if (fadeAnimator != null) {
+            fadeAnimator.cancel();
+        }
+
+        float to = visible ? 1.0f : 0.0f;
+        fadeAnimator = ObjectAnimator.ofFloat(hostView, "alpha", to);
+        fadeAnimator.addListener(new AnimatorListenerAdapter() {
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                hostView.setLayerType(View.LAYER_TYPE_NONE, null);
+            }
+        });
+
+        hostView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        if (ViewCompat.isAttachedToWindow(hostView)) {
+            hostView.buildLayer();
+        }
         fadeAnimator.start();
     }
 
+    /**
+     * Makes the overlay touchable and measures from the touch point to the nearest keylines and
+     * spacing edges while a finger is down. The overlay swallows touches while inspecting, so it
+     * only inspects while a spec is shown.
+     *
+     * @return {@code true} if the overlay is inspecting.
+     */
+    boolean inspect(boolean inspect) {
+        if (inspect && (faded || !hostView.isShown())) {
+            inspect = false;
+        }
+        if (inspect == inspecting) {
+            return inspecting;
+        }
+        inspecting = inspect;
+
+        // System overlays never receive touches, the window has to be re-added as an alert
+        windowManager.removeView(hostView);
+        hostView.setOnTouchListener(inspect ? this::onInspectTouch : null);
+        windowManager.addView(hostView, getLayoutParams(true, inspect));
+
+        if (!inspect) {
+            specDrawable.stopInspecting();
+        }
+        return inspecting;
+    }
+
     void exit() {
         stopForeground(true);
         stopSelf();
@@ -166,14 +310,36 @@ public class KeylinesService extends Service {
         }
     }
 
-    private WindowManager.LayoutParams getLayoutParams(boolean fullscreen) {
-        int flags = WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
-                | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+    private boolean onInspectTouch(View view, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                specDrawable.inspect(event.getX(), event.getY());
+                return true;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                specDrawable.stopInspecting();
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private WindowManager.LayoutParams getLayoutParams(boolean fullscreen, boolean touchable) {
+        int flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED;
 
         if (fullscreen) {
             flags |= WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
         }
-        int type = WindowManager.LayoutParams.TYPE_SYSTEM_OVERLAY;
+        if (!touchable) {
+            flags |= WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+        }
+        int type = touchable
+                ? WindowManager.LayoutParams.TYPE_SYSTEM_ALERT
+                : WindowManager.LayoutParams.TYPE_SYSTEM_OVERLAY;
 
         return new WindowManager.LayoutParams(
                 WindowManager.LayoutParams.MATCH_PARENT,
@@ -181,19 +347,181 @@ public class KeylinesService extends Service {
                 type, flags, PixelFormat.TRANSLUCENT);
     }
 
-    private void show(String payload) {
-        JSONObject jsonSpec = null;
+    /**
+     * Handles a command. If a show command carries only the hash of a spec that isn't cached, or a
+     * patch that doesn't apply, the sender is asked for the spec itself through {@code replyTo}.
+     * Broadcasts have no {@code replyTo}, they always carry the full spec.
+     */
+    private void handleCommand(@Nullable String action, @Nullable Bundle extras,
+                               @Nullable Messenger replyTo) {
+        if (ACTION_SHOW.equals(action)) {
+            if (extras == null) {
+                return;
+            }
+
+            Observable<Spec> spec = getSpec(extras, replyTo);
+            if (spec != null) {
+                specCommands.onNext(spec);
+            } else {
+                requestSpec(replyTo, extras.getLong(EXTRA_SPEC_HASH));
+            }
+        } else if (ACTION_STOP.equals(action)) {
+            specCommands.onNext(Observable.<Spec>just(null));
+            specDrawable.highlight(null);
+        } else if (ACTION_HIGHLIGHT.equals(action)) {
+            specDrawable.highlight(extras != null ? extras.getFloatArray(EXTRA_VIOLATIONS) : null);
+        } else if (action != null) {
+            throw new UnsupportedOperationException("Unknown action: " + action);
+        }
+    }
+
+    /**
+     * @return The spec in the extras, parsed or patched on a background thread when subscribed
+     * to. {@code null} if the extras carry only the hash of a spec that isn't cached, or a patch
+     * of a spec that isn't cached.
+     */
+    @Nullable
+    private Observable<Spec> getSpec(Bundle extras, @Nullable Messenger replyTo) {
+        Long hash = extras.containsKey(EXTRA_SPEC_HASH) ? extras.getLong(EXTRA_SPEC_HASH) : null;
+        ParcelFileDescriptor descriptor = extras.getParcelable(EXTRA_SPEC_DESCRIPTOR);
+        byte[] bytes = extras.getByteArray(EXTRA_SPEC_BYTES);
+        String json = extras.getString(EXTRA_SPEC);
+
+        if (descriptor != null) {
+            // Large spec, shared by the SDK. The descriptor is closed once parsed, or once a newer
+            // command unsubscribes before it is.
+            return Observable.using(
+                    () -> new ParcelFileDescriptor.AutoCloseInputStream(descriptor),
+                    in -> parseLater(hash, () -> parse(in)),
+                    in -> {
+                        try { in.close(); } catch (IOException ignored) {}
+                    });
+        } else if (bytes != null) {
+            return parseLater(hash, () -> parse(bytes));
+        } else if (json != null) {
+            return parseLater(hash, () -> parse(json)); // JSON fallback
+        } else if (hash == null) {
+            return Observable.empty();
+        }
+
+        Spec spec = specCache.get(hash);
+        if (spec != null) {
+            return Observable.just(spec);
+        }
+
+        // Patch, if the base spec is still cached
+        byte[] removed = extras.getByteArray(EXTRA_SPEC_PATCH_REMOVED);
+        byte[] added = extras.getByteArray(EXTRA_SPEC_PATCH_ADDED);
+        Spec base = removed != null && added != null
+                ? specCache.get(extras.getLong(EXTRA_SPEC_BASE_HASH)) : null;
+        if (base != null) {
+            return parseLater(hash, () -> {
+                Spec patched = patch(base, removed, added);
+                if (patched == null) {
+                    requestSpec(replyTo, hash); // Start over from the full spec
+                }
+                return patched;
+            });
+        }
+
+        Timber.d("Spec %016x isn't cached, requesting it.", hash);
+        return null;
+    }
+
+    /**
+     * Parses the spec on a background thread and caches it under its hash.
+     */
+    private Observable<Spec> parseLater(@Nullable Long hash, Callable<Spec> parser) {
+        return Observable.fromCallable(parser)
+                .filter(spec -> spec != null) // Invalid, keep showing the current spec
+                .doOnNext(spec -> {
+                    if (hash != null) {
+                        specCache.put(hash, spec);
+                    }
+                })
+                .onErrorResumeNext(throwable -> {
+                    Timber.e(throwable, "Unable to parse spec");
+                    return Observable.empty();
+                })
+                .subscribeOn(Schedulers.computation());
+    }
+
+    /**
+     * Asks the SDK for the spec with the given hash in full, the SDK sends it if it's still the
+     * latest. Safe to call from any thread.
+     */
+    private void requestSpec(@Nullable Messenger replyTo, long hash) {
+        if (replyTo == null) {
+            return;
+        }
+
+        Message message = Message.obtain(null, MSG_REQUEST_SPEC);
+        Bundle data = new Bundle();
+        data.putLong(EXTRA_SPEC_HASH, hash);
+        message.setData(data);
+        try {
+            replyTo.send(message);
+        } catch (RemoteException e) {
+            Timber.w(e, "Unable to request spec %016x.", hash);
+        }
+    }
+
+    @Nullable
+    private Spec patch(Spec base, byte[] removed, byte[] added) {
+        try {
+            return SpecCodec.patch(base, removed, added);
+        } catch (SpecParseException e) {
+            Timber.e(e, "Invalid spec patch");
+            return null;
+        }
+    }
+
+    @Nullable
+    private Spec parse(byte[] bytes) {
         try {
-            jsonSpec = new JSONObject(payload);
-        } catch (JSONException e) {
-            Timber.e("Invalid JSON format: %s", payload);
+            return SpecCodec.decode(bytes);
+        } catch (SpecParseException e) {
+            Timber.e(e, "Invalid binary spec, %d bytes", bytes.length);
+            return null;
         }
+    }
 
-        // Update the Spec
-        if (jsonSpec != null) {
-            specDrawable.setSpec(SpecParser.fromJson(jsonSpec));
-            specDrawable.invalidateSelf();
+    /**
+     * Maps a shared spec read-only and decodes it in place. The mapping stays valid after the
+     * stream is closed, and is released with the buffer.
+     */
+    @Nullable
+    private Spec parse(FileInputStream in) {
+        try {
+            FileChannel channel = in.getChannel();
+            return SpecCodec.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            Timber.e(e, "Unable to map shared spec");
+            return null;
+        } catch (SpecParseException e) {
+            Timber.e(e, "Invalid shared spec");
+            return null;
         }
+    }
+
+    @Nullable
+    private Spec parse(String payload) {
+        List<SpecParseException> errors = new ArrayList<>();
+        try {
+            return SpecParser.fromJson(payload, errors);
+        } catch (SpecParseException e) {
+            Timber.e(e, "Invalid JSON format: %s", payload);
+            return null;
+        } finally {
+            for (int i = 0, n = errors.size(); i < n; i++) {
+                Timber.w(errors.get(i).getMessage());
+            }
+        }
+    }
+
+    private void show(Spec spec) {
+        // Update the Spec, the drawable invalidates itself only if something changed
+        specDrawable.setSpec(spec);
 
         if (!hostView.isShown()) {
             hostView.setVisibility(View.VISIBLE);
@@ -201,6 +529,7 @@ public class KeylinesService extends Service {
     }
 
     private void stop() {
+        notificationControlCenter.stopInspecting(); // Nothing to measure, give touches back
         hostView.setVisibility(View.INVISIBLE);
         specDrawable.setSpec(null);
     }
@@ -212,4 +541,24 @@ public class KeylinesService extends Service {
         notificationManager.notify(NOTIFICATION_ID, notification);
     }
 
+    /**
+     * Lets {@link com.mobsandgeeks.keylines.exposed.StethoscopeService}, which runs in the same
+     * process, hand over commands from the SDK without going through the activity manager.
+     */
+    public class LocalBinder extends Binder {
+
+        /**
+         * Handles a command, same as starting the service with an intent.
+         *
+         * @param action {@link #ACTION_SHOW}, {@link #ACTION_STOP} or {@link #ACTION_HIGHLIGHT}.
+         * @param extras The command's extras, can be {@code null}.
+         * @param replyTo Asked for the full spec if the command refers to a spec that isn't
+         *                cached, or carries a patch that doesn't apply. Can be {@code null}.
+         */
+        public void handleCommand(String action, @Nullable Bundle extras,
+                                  @Nullable Messenger replyTo) {
+            KeylinesService.this.handleCommand(action, extras, replyTo);
+        }
+    }
+
 }
@@ -52,6 +52,7 @@ class NotificationControlCenter extends BroadcastReceiver {
     private static final String ACTION_FLIP_HORIZONTAL   = NAMESPACE_ACTION + ".FLIP_HORIZONTAL";
     private static final String ACTION_FLIP_VERTICAL     = NAMESPACE_ACTION + ".FLIP_VERTICAL";
     private static final String ACTION_TOGGLE_VISIBILITY = NAMESPACE_ACTION + ".TOGGLE_VISIBILITY";
+    private static final String ACTION_TOGGLE_INSPECT    = NAMESPACE_ACTION + ".TOGGLE_INSPECT";
     private static final String ACTION_EXIT              = NAMESPACE_ACTION + ".EXIT";
 
     /**
@@ -63,6 +64,7 @@ class NotificationControlCenter extends BroadcastReceiver {
         put(R.id.flipHorizontalImageButton,     R.drawable.ic_flip_h_off);
         put(R.id.flipVerticalImageButton,       R.drawable.ic_flip_v_off);
         put(R.id.visibilityImageButton,         R.drawable.ic_visibility_on);
+        put(R.id.inspectImageButton,            R.drawable.ic_inspect_off);
         put(R.id.exitImageButton,               R.drawable.ic_exit);
     }};
 
@@ -75,6 +77,7 @@ class NotificationControlCenter extends BroadcastReceiver {
         put(R.id.flipHorizontalImageButton,     ACTION_FLIP_HORIZONTAL);
         put(R.id.flipVerticalImageButton,       ACTION_FLIP_VERTICAL);
         put(R.id.visibilityImageButton,         ACTION_TOGGLE_VISIBILITY);
+        put(R.id.inspectImageButton,            ACTION_TOGGLE_INSPECT);
         put(R.id.exitImageButton,               ACTION_EXIT);
     }};
 
@@ -88,6 +91,7 @@ class NotificationControlCenter extends BroadcastReceiver {
                 put(ACTION_FLIP_HORIZONTAL,     () -> toggleFlipH());
                 put(ACTION_FLIP_VERTICAL,       () -> toggleFlipV());
                 put(ACTION_TOGGLE_VISIBILITY,   () -> toggleVisibility());
+                put(ACTION_TOGGLE_INSPECT,      () -> toggleInspect());
                 put(ACTION_EXIT,                () -> exit());
             }}
     );
@@ -100,6 +104,7 @@ class NotificationControlCenter extends BroadcastReceiver {
     private boolean flipHorizontal = false;
     private boolean flipVertical = false;
     private boolean visible = true;
+    private boolean inspect = false;
 
     private KeylinesService keylinesService;
 
@@ -164,6 +169,19 @@ class NotificationControlCenter extends BroadcastReceiver {
         return new Pair<>(notification, contentView);
     }
 
+    /**
+     * Leaves inspect mode, if it is on. Called by {@link KeylinesService} when the spec is
+     * stopped or faded out, the overlay would otherwise keep swallowing every touch.
+     */
+    void stopInspecting() {
+        if (inspect) {
+            inspect = false;
+            keylinesService.inspect(false);
+            keylinesService.updateNotificationIcon(
+                    R.id.inspectImageButton, R.drawable.ic_inspect_off);
+        }
+    }
+
     // TODO 25/10/16 Refactor toggle methods
     private void toggleGrid() {
         @DrawableRes int iconRes = (showGrid = !showGrid)
@@ -193,6 +211,13 @@ class NotificationControlCenter extends BroadcastReceiver {
         keylinesService.updateNotificationIcon(R.id.visibilityImageButton, iconRes);
     }
 
+    private void toggleInspect() {
+        // The service refuses to inspect while no spec is shown
+        @DrawableRes int iconRes = (inspect = keylinesService.inspect(!inspect))
+                ? R.drawable.ic_inspect_on : R.drawable.ic_inspect_off;
+        keylinesService.updateNotificationIcon(R.id.inspectImageButton, iconRes);
+    }
+
     private void exit() {
         keylinesService.exit();
     }
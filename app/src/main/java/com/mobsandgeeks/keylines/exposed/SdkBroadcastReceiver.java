@@ -26,6 +26,7 @@ import com.mobsandgeeks.keylines.KeylinesService;
 import static com.mobsandgeeks.keylines.KeylinesService.ACTION_SHOW;
 import static com.mobsandgeeks.keylines.KeylinesService.ACTION_STOP;
 import static com.mobsandgeeks.keylines.KeylinesService.EXTRA_SPEC;
+import static com.mobsandgeeks.keylines.KeylinesService.EXTRA_SPEC_BYTES;
 
 /**
  * @author Ragunath Jawahar
@@ -37,13 +38,18 @@ public class SdkBroadcastReceiver extends BroadcastReceiver {
         String action = intent.getAction();
 
         if (ACTION_SHOW.equals(action)) {
-            String spec = intent.getExtras().getString(EXTRA_SPEC);
-            if (spec == null) {
+            byte[] specBytes = intent.getByteArrayExtra(EXTRA_SPEC_BYTES);
+            String spec = intent.getStringExtra(EXTRA_SPEC);
+            if (specBytes == null && spec == null) {
                 return;
             }
             Intent showIntent = new Intent(context, KeylinesService.class);
             showIntent.setAction(ACTION_SHOW);
-            showIntent.putExtra(EXTRA_SPEC, spec);
+            if (specBytes != null) {
+                showIntent.putExtra(EXTRA_SPEC_BYTES, specBytes);
+            } else {
+                showIntent.putExtra(EXTRA_SPEC, spec);
+            }
             context.startService(showIntent);
 
         } else if (ACTION_STOP.equals(action)) {
@@ -17,25 +17,70 @@
 package com.mobsandgeeks.keylines.exposed;
 
 import android.app.Service;
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Message;
 import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.Nullable;
 
+import com.mobsandgeeks.keylines.KeylinesService;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
 import timber.log.Timber;
 
+import static com.mobsandgeeks.keylines.KeylinesService.ACTION_HIGHLIGHT;
+import static com.mobsandgeeks.keylines.KeylinesService.ACTION_SHOW;
 import static com.mobsandgeeks.keylines.KeylinesService.ACTION_STOP;
+import static com.mobsandgeeks.keylines.KeylinesService.EXTRA_SPEC_DESCRIPTOR;
 
 /**
  * Listens to the "heart-beat" from an SDK integrated app and sends a terminate signal if the app
  * quits or dies.
  *
+ * <p>The SDK also sends its commands through this service's {@link Messenger}. The service runs in
+ * the same process as {@link KeylinesService} and is bound to it while it runs, so a spec reaches
+ * the overlay in a single binder transaction. {@link KeylinesService} is only started by the
+ * first spec, an SDK integrated app that doesn't show one never brings up the overlay or its
+ * notification. {@link SdkBroadcastReceiver} remains as a fallback.</p>
+ *
+ * <p>A spec that was sent before arrives as its content hash, a changed spec may arrive as a patch
+ * of one. If the overlay no longer has the spec, or the patch doesn't apply, the overlay sends
+ * {@link #MSG_REQUEST_SPEC} to the message's {@link Message#replyTo} and the SDK sends the spec
+ * itself.</p>
+ *
  * @author Ragunath Jawahar
  */
-public class StethoscopeService extends Service {
+public class StethoscopeService extends Service implements ServiceConnection {
+
+    // Messages, keep in sync with the SDK
+    public static final int MSG_SHOW = 1;
+    public static final int MSG_STOP = 2;
+    public static final int MSG_HIGHLIGHT = 3;
+    public static final int MSG_REQUEST_SPEC = 100;
+
+    // Attributes
+    private final Messenger messenger = new Messenger(new HeartbeatHandler(this));
+    private KeylinesService.LocalBinder keylinesService;
+
+    // Latest command received while KeylinesService starts
+    private String pendingAction;
+    private Bundle pendingExtras;
+    private Messenger pendingReplyTo;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
 
-    private final Messenger messenger = new Messenger(new HeartbeatHandler());
+        // Connects whenever KeylinesService runs, without creating it
+        bindService(new Intent(this, KeylinesService.class), this, 0);
+    }
 
     @Nullable
     @Override
@@ -46,14 +91,109 @@ public class StethoscopeService extends Service {
 
     @Override
     public boolean onUnbind(Intent intent) {
-        sendBroadcast(new Intent(ACTION_STOP));
+        handleCommand(ACTION_STOP, null);
 
         Timber.i("Everyone I listen to, dies :'(");
         return super.onUnbind(intent);
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        unbindService(this);
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder service) {
+        keylinesService = (KeylinesService.LocalBinder) service;
+        if (pendingAction != null) {
+            handleCommand(pendingAction, pendingExtras, pendingReplyTo);
+            pendingAction = null;
+            pendingExtras = null;
+            pendingReplyTo = null;
+        }
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        // Also once KeylinesService stops, the next spec starts it again
+        keylinesService = null;
+    }
+
+    private void handleCommand(String action, @Nullable Bundle extras) {
+        handleCommand(action, extras, null);
+    }
+
+    private void handleCommand(String action, @Nullable Bundle extras,
+                               @Nullable Messenger replyTo) {
+        if (keylinesService != null) {
+            keylinesService.handleCommand(action, extras, replyTo);
+            return;
+        }
+
+        if (ACTION_SHOW.equals(action)) {
+            // Started rather than bound, so that the overlay outlives the SDK integrated app
+            startService(new Intent(this, KeylinesService.class));
+        } else if (pendingAction == null) {
+            return; // Nothing to stop
+        }
+        if (pendingExtras != null) {
+            closeSharedSpec(pendingExtras); // Superseded, never parsed
+        }
+        pendingAction = action;
+        pendingExtras = extras;
+        pendingReplyTo = replyTo;
+    }
+
+    /**
+     * Highlights are only meaningful for the current layout, they aren't kept for later.
+     */
+    private void highlight(@Nullable Bundle extras) {
+        if (keylinesService != null) {
+            keylinesService.handleCommand(ACTION_HIGHLIGHT, extras, null);
+        }
+    }
+
+    private void closeSharedSpec(Bundle extras) {
+        ParcelFileDescriptor descriptor = extras.getParcelable(EXTRA_SPEC_DESCRIPTOR);
+        if (descriptor != null) {
+            try { descriptor.close(); } catch (IOException ignored) {}
+        }
+    }
+
     static class HeartbeatHandler extends Handler {
-        // Nothing special here... I just like the name.
+
+        private final WeakReference<StethoscopeService> serviceReference;
+
+        HeartbeatHandler(StethoscopeService service) {
+            this.serviceReference = new WeakReference<>(service);
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            StethoscopeService service = serviceReference.get();
+            if (service == null) {
+                return;
+            }
+
+            switch (message.what) {
+                case MSG_SHOW:
+                    service.handleCommand(ACTION_SHOW, message.getData(), message.replyTo);
+                    break;
+
+                case MSG_STOP:
+                    service.handleCommand(ACTION_STOP, null);
+                    break;
+
+                case MSG_HIGHLIGHT:
+                    service.highlight(message.getData());
+                    break;
+
+                default:
+                    super.handleMessage(message);
+                    break;
+            }
+        }
     }
 
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.io.PrintWriter;
+
+/**
+ * Draw-time statistics collected by {@link SpecDrawable}. Durations are the time spent on the
+ * drawing thread issuing draw calls. Spacings, baseline grid and keylines are measured whenever
+ * they are issued, either directly or into a layer's recording, so they don't cover replayed
+ * frames. Replaying a layer's recording is measured on its own, the frame histogram covers every
+ * frame.
+ *
+ * <p>Not thread-safe, must be used from the main thread.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class DrawStats {
+
+    // Categories
+    static final int CATEGORY_SPACINGS = 0;
+    static final int CATEGORY_BASELINE_GRID = 1;
+    static final int CATEGORY_KEYLINES = 2;
+    static final int CATEGORY_REPLAY = 3;
+    static final int CATEGORY_FRAME = 4;
+
+    private static final String[] CATEGORY_NAMES = {
+            "spacings", "baseline grid", "keylines", "replay", "frame"
+    };
+
+    // Histograms
+    private final DrawTimeHistogram[] histograms = {
+            new DrawTimeHistogram(), new DrawTimeHistogram(), new DrawTimeHistogram(),
+            new DrawTimeHistogram(), new DrawTimeHistogram()
+    };
+
+    // Counters
+    private long invalidations;
+    private long skippedUpdates;
+    private long coalescedUpdates;
+    private long recordings;
+    private long replays;
+
+    void record(int category, long durationNanos) {
+        histograms[category].record(durationNanos);
+    }
+
+    void onInvalidate() {
+        invalidations++;
+    }
+
+    void onSkippedUpdate() {
+        skippedUpdates++;
+    }
+
+    void onCoalescedUpdate() {
+        coalescedUpdates++;
+    }
+
+    void onRecording() {
+        recordings++;
+    }
+
+    void onReplay() {
+        replays++;
+    }
+
+    void reset() {
+        for (DrawTimeHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        invalidations = 0;
+        skippedUpdates = 0;
+        coalescedUpdates = 0;
+        recordings = 0;
+        replays = 0;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.print("invalidations=");
+        writer.print(invalidations);
+        writer.print(" skippedUpdates=");
+        writer.print(skippedUpdates);
+        writer.print(" coalescedUpdates=");
+        writer.print(coalescedUpdates);
+        writer.print(" recordings=");
+        writer.print(recordings);
+        writer.print(" replays=");
+        writer.println(replays);
+
+        for (int i = 0; i < histograms.length; i++) {
+            DrawTimeHistogram histogram = histograms[i];
+            writer.print(prefix);
+            writer.print(CATEGORY_NAMES[i]);
+            writer.print(": count=");
+            writer.print(histogram.count());
+            writer.print(" mean=");
+            writer.print(histogram.meanMicros());
+            writer.print("us p50=");
+            writer.print(histogram.percentileMicros(50));
+            writer.print("us p90=");
+            writer.print(histogram.percentileMicros(90));
+            writer.print("us p99=");
+            writer.print(histogram.percentileMicros(99));
+            writer.print("us max=");
+            writer.print(histogram.maxMicros());
+            writer.println("us");
+        }
+    }
+
+}
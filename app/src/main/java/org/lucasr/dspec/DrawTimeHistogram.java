@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * A fixed-size, allocation-free histogram of durations in microseconds. Buckets grow
+ * exponentially, every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets,
+ * which keeps the relative error of a reported percentile under 25%.
+ *
+ * @author Ragunath Jawahar
+ */
+final class DrawTimeHistogram {
+
+    // Constants
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 24; // Up to ~33 seconds, more than enough for a frame
+
+    // Attributes
+    private final long[] counts = new long[MAGNITUDES * SUB_BUCKETS];
+    private long count;
+    private long totalMicros;
+    private long maxMicros;
+
+    void record(long durationNanos) {
+        long micros = durationNanos / 1000;
+        counts[indexOf(micros)]++;
+        count++;
+        totalMicros += micros;
+        if (micros > maxMicros) {
+            maxMicros = micros;
+        }
+    }
+
+    long count() {
+        return count;
+    }
+
+    long maxMicros() {
+        return maxMicros;
+    }
+
+    long meanMicros() {
+        return count != 0 ? totalMicros / count : 0;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile.
+     *
+     * @param percentile A value between 0 and 100.
+     * @return The duration in microseconds, 0 if nothing was recorded.
+     */
+    long percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long threshold = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold) {
+                return Math.min(lowerBound(i + 1), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        totalMicros = 0;
+        maxMicros = 0;
+    }
+
+    private int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(index, counts.length - 1);
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (1L << magnitude) | ((long) subBucket << (magnitude - SUB_BUCKET_BITS));
+    }
+
+}
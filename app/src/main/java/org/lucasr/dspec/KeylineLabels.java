@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+import static org.lucasr.dspec.CompiledSpec.BATCH_KEYLINES;
+import static org.lucasr.dspec.CompiledSpec.PRIMITIVE_SIZE;
+
+/**
+ * Keyline labels laid out for a {@link CompiledSpec}. A label sits next to its keyline, to the
+ * right of vertical and above horizontal ones, and slides along the keyline until it doesn't
+ * overlap the labels placed before it. Labels that don't fit anywhere are left out.
+ *
+ * <p>Laid out when the spec or the bounds change, drawing only reads {@link #texts} and
+ * {@link #origins}.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class KeylineLabels {
+
+    // Constants
+    private static final float LABEL_PADDING_DIP = 2f;
+    private static final int MAX_ATTEMPTS = 8;
+
+    // Values per rectangle and origin
+    private static final int RECT_SIZE = 4;
+    private static final int ORIGIN_SIZE = 2;
+
+    // Attributes
+    final String[] texts;
+    final float[] origins; // Left and baseline of each label
+    final int count;
+    final int total;
+
+    /**
+     * Lays out the labels of a compiled spec's keylines.
+     *
+     * @param keylines     The spec's keylines, in the order they were compiled.
+     * @param compiledSpec The compiled spec.
+     * @param metrics      Metrics for the compiled spec's density.
+     * @return The placed labels.
+     */
+    static KeylineLabels layout(@Nullable List<Keyline> keylines, CompiledSpec compiledSpec,
+                                LabelMetrics metrics) {
+        int total = 0;
+        for (int i = 0, n = keylines != null ? keylines.size() : 0; i < n; i++) {
+            total += keylines.get(i).label() != null ? 1 : 0;
+        }
+
+        String[] texts = new String[total];
+        float[] origins = new float[total * ORIGIN_SIZE];
+        float[] placed = new float[total * RECT_SIZE];
+        int count = 0;
+        if (total == 0) {
+            return new KeylineLabels(texts, origins, count, total);
+        }
+
+        final float padding = LABEL_PADDING_DIP * compiledSpec.density;
+        final float height = metrics.height();
+        final float[] p = compiledSpec.primitives;
+        final int offset = compiledSpec.batchOffsets[BATCH_KEYLINES];
+
+        for (int i = 0, n = keylines.size(); i < n; i++) {
+            String label = keylines.get(i).label();
+            if (label == null) {
+                continue;
+            }
+
+            final float width = metrics.width(label);
+            final int k = offset + i * PRIMITIVE_SIZE; // One primitive per keyline
+            final boolean vertical = p[k] == p[k + 2];
+
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                float left, top;
+                if (vertical) {
+                    left = p[k] + padding;
+                    if (left + width > compiledSpec.width) {
+                        left = p[k] - padding - width; // Flip to the left of the keyline
+                    }
+                    top = padding + attempt * (height + padding);
+                } else {
+                    top = p[k + 1] - padding - height;
+                    if (top < 0) {
+                        top = p[k + 1] + padding; // Flip below the keyline
+                    }
+                    left = padding + attempt * (width + padding);
+                }
+
+                if (fits(left, top, left + width, top + height, compiledSpec, placed, count)) {
+                    int r = count * RECT_SIZE;
+                    placed[r] = left;
+                    placed[r + 1] = top;
+                    placed[r + 2] = left + width;
+                    placed[r + 3] = top + height;
+
+                    texts[count] = label;
+                    origins[count * ORIGIN_SIZE] = left;
+                    origins[count * ORIGIN_SIZE + 1] = top + metrics.ascent();
+                    count++;
+                    break;
+                }
+            }
+        }
+
+        return new KeylineLabels(texts, origins, count, total);
+    }
+
+    private static boolean fits(float left, float top, float right, float bottom,
+                                CompiledSpec compiledSpec, float[] placed, int count) {
+        if (left < 0 || top < 0 || right > compiledSpec.width || bottom > compiledSpec.height) {
+            return false;
+        }
+
+        for (int i = 0, n = count * RECT_SIZE; i < n; i += RECT_SIZE) {
+            if (left < placed[i + 2] && placed[i] < right
+                    && top < placed[i + 3] && placed[i + 1] < bottom) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private KeylineLabels(String[] texts, float[] origins, int count, int total) {
+        this.texts = texts;
+        this.origins = origins;
+        this.count = count;
+        this.total = total;
+    }
+
+}
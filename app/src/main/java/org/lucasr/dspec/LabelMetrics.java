@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.lucasr.dspec;
+
+import android.graphics.Paint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static android.graphics.Paint.ANTI_ALIAS_FLAG;
+
+/**
+ * Measures keyline labels for a density. Widths are cached by label until the density changes,
+ * so a label is shaped once however often its spec is laid out again.
+ *
+ * <p>Not thread-safe, must be used from the main thread. Not final, so that tests can measure
+ * with fixed metrics.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+class LabelMetrics {
+
+    // Constants
+    static final float LABEL_TEXT_SIZE_DIP = 10f;
+    private static final int MAX_CACHED_WIDTHS = 256;
+
+    // Attributes
+    private final Paint paint = new Paint(ANTI_ALIAS_FLAG);
+    private final Map<String, Float> widths = new HashMap<>();
+    private float density;
+    private float ascent;
+    private float descent;
+
+    /**
+     * Switches to the text size for the density, dropping the cached widths if it changed.
+     */
+    void setDensity(float density) {
+        if (this.density == density) {
+            return;
+        }
+
+        this.density = density;
+        paint.setTextSize(textSize());
+        ascent = -paint.ascent();
+        descent = paint.descent();
+        widths.clear();
+    }
+
+    float textSize() {
+        return LABEL_TEXT_SIZE_DIP * density;
+    }
+
+    float width(String label) {
+        Float width = widths.get(label);
+        if (width == null) {
+            if (widths.size() >= MAX_CACHED_WIDTHS) {
+                widths.clear(); // Labels of specs long gone
+            }
+            width = paint.measureText(label);
+            widths.put(label, width);
+        }
+        return width;
+    }
+
+    /**
+     * @return Distance from the top of a label to its baseline.
+     */
+    float ascent() {
+        return ascent;
+    }
+
+    float height() {
+        return ascent + descent;
+    }
+
+}
@@ -20,24 +20,51 @@ package org.lucasr.dspec;
 import android.content.res.Resources;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
+import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.SparseArray;
 
+import java.io.PrintWriter;
 import java.util.List;
 
 /**
+ * Composites one or more {@link Spec} layers. Layers are drawn in ascending z-order, each with
+ * its own paint state and recording. {@link #setSpec(Spec)} updates the
+ * {@link #DEFAULT_LAYER}.
+ *
+ * <p>Mutators don't take effect immediately. Changes made within a frame are applied together
+ * on the next one through {@link #scheduleSelf(Runnable, long)}, which the hosting view aligns
+ * with vsync, so a burst of changes diffs, compiles and invalidates only once.</p>
+ *
  * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
  * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
  */
 public class SpecDrawable extends Drawable {
 
+    // Layers
+    public static final int DEFAULT_LAYER = 0;
+
+    // Constants
+    private static final int HIGHLIGHT_COLOR = 0x66FF1744;
+    private static final int HIGHLIGHT_SIZE = 4;
+
     // Attributes
     private int width, height;
     private float density;
-    private Spec spec;
+    private int alpha = 0xFF;
+    private ColorFilter colorFilter;
+
+    /**
+     * Layers keyed by their z-order, {@link SparseArray} keeps them sorted.
+     */
+    private final SparseArray<SpecLayer> layers = new SparseArray<>();
+    private final LabelMetrics labelMetrics = new LabelMetrics();
 
     /**
      * Defaults as in {@link com.mobsandgeeks.keylines.NotificationControlCenter}.
@@ -46,26 +73,84 @@ public class SpecDrawable extends Drawable {
     private boolean flipHorizontal = false;
     private boolean flipVertical = false;
 
+    /**
+     * Union of the elements that changed in the last applied frame, reported through
+     * {@link #getDirtyBounds()} while the drawable invalidates itself.
+     */
+    private final Rect dirtyBounds = new Rect();
+    private float[] elementPrimitives = new float[CompiledSpec.PRIMITIVE_SIZE];
+    private boolean partialInvalidation = false;
+
+    /**
+     * Set when a labelled keyline changed, other labels may have moved out of its way.
+     */
+    private boolean labelsChanged = false;
+
+    /**
+     * Changes made since the last frame, a {@code null} spec removes its layer.
+     */
+    private final SparseArray<Spec> pendingSpecs = new SparseArray<>();
+    private boolean pendingShowGrid = showGrid;
+    private boolean pendingFlipHorizontal = flipHorizontal;
+    private boolean pendingFlipVertical = flipVertical;
+    private boolean pendingInspecting = false;
+    private float pendingInspectX;
+    private float pendingInspectY;
+    private boolean framePending = false;
+
+    private final Runnable applyPendingState = new Runnable() {
+
+        @Override
+        public void run() {
+            applyPendingState();
+        }
+    };
+
+    private final SpecInspector inspector;
+
+    /**
+     * Bounds of the views reported off the spec, drawn on top of the layers. Left, top, right and
+     * bottom of each view.
+     */
+    private float[] highlights;
+    private float[] pendingHighlights;
+    private boolean highlightsPending = false;
+    private final Paint highlightPaint = new Paint();
+
+    // Diagnostics
+    private final DrawStats stats = new DrawStats();
+
     public SpecDrawable(Resources resources) {
         this.density = resources.getDisplayMetrics().density;
+        this.inspector = new SpecInspector(density);
+        highlightPaint.setColor(HIGHLIGHT_COLOR);
     }
 
     @Override
     public void draw(@NonNull Canvas canvas) {
-        if (spec == null) {
-            return;
+        final long start = System.nanoTime();
+
+        // Hardware canvases can't replay pictures before Marshmallow
+        boolean useRecording = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                || !canvas.isHardwareAccelerated();
+
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            layers.valueAt(i).draw(canvas, useRecording, density, width, height,
+                    showGrid, flipHorizontal, flipVertical, stats);
         }
+        drawHighlights(canvas);
+        inspector.draw(canvas, width, height);
 
-        // Start painting!
-        drawSpacings(spec.spacings(), canvas, width, height);
-        drawBaselineGrid(spec.baselineGrid(), canvas, width, height);
-        drawKeylines(spec.keylines(), canvas, width, height);
+        stats.record(DrawStats.CATEGORY_FRAME, System.nanoTime() - start);
     }
 
     @Override
     protected void onBoundsChange(Rect bounds) {
         width = bounds.width();
         height = bounds.height();
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            layers.valueAt(i).prepare(density, width, height);
+        }
     }
 
     @Override
@@ -80,16 +165,30 @@ public class SpecDrawable extends Drawable {
 
     @Override
     public void setAlpha(int alpha) {
-        Grid.setAlpha(alpha);
-        Keyline.setAlpha(alpha);
-        Spacing.setAlpha(alpha);
+        this.alpha = alpha;
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            layers.valueAt(i).setAlpha(alpha);
+        }
     }
 
     @Override
     public void setColorFilter(ColorFilter colorFilter) {
-        Grid.setColorFilter(colorFilter);
-        Keyline.setColorFilter(colorFilter);
-        Spacing.setColorFilter(colorFilter);
+        this.colorFilter = colorFilter;
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            layers.valueAt(i).setColorFilter(colorFilter);
+        }
+    }
+
+    @Override
+    public void invalidateSelf() {
+        stats.onInvalidate();
+        super.invalidateSelf();
+    }
+
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return partialInvalidation ? dirtyBounds : super.getDirtyBounds();
     }
 
     @Override
@@ -98,68 +197,255 @@ public class SpecDrawable extends Drawable {
     }
 
     public void setSpec(@Nullable Spec spec) {
-        this.spec = spec;
-        setColors(spec);
-        invalidateSelf();
+        setSpec(DEFAULT_LAYER, spec);
+    }
+
+    /**
+     * Sets the spec of a layer, creating the layer if required. Layers with a higher z-order are
+     * drawn on top of the ones with a lower z-order. Takes effect on the next frame.
+     *
+     * @param zOrder The layer's z-order.
+     * @param spec   The spec for the layer, {@code null} removes the layer.
+     */
+    public void setSpec(int zOrder, @Nullable Spec spec) {
+        pendingSpecs.put(zOrder, spec);
+        scheduleFrame();
     }
 
     public void showGrid(boolean show) {
-        this.showGrid = show;
-        invalidateSelf();
+        this.pendingShowGrid = show;
+        scheduleFrame();
     }
 
     public void flipHorizontal(boolean flip) {
-        this.flipHorizontal = flip;
-        invalidateSelf();
+        this.pendingFlipHorizontal = flip;
+        scheduleFrame();
     }
 
     public void flipVertical(boolean flip) {
-        this.flipVertical = flip;
-        invalidateSelf();
+        this.pendingFlipVertical = flip;
+        scheduleFrame();
     }
 
-    private void setColors(@Nullable Spec spec) {
-        if (spec == null) {
-            return;
+    /**
+     * Shows the distances from a point to the nearest keyline and spacing edge on each axis, until
+     * {@link #stopInspecting()} is called. Takes effect on the next frame, so a burst of touch
+     * events is measured once per frame.
+     *
+     * @param x Horizontal position of the point, relative to the drawable's bounds.
+     * @param y Vertical position of the point, relative to the drawable's bounds.
+     */
+    public void inspect(float x, float y) {
+        this.pendingInspecting = true;
+        this.pendingInspectX = x;
+        this.pendingInspectY = y;
+        scheduleFrame();
+    }
+
+    public void stopInspecting() {
+        this.pendingInspecting = false;
+        scheduleFrame();
+    }
+
+    /**
+     * Highlights views that are off the spec, replacing the ones highlighted before. Takes effect
+     * on the next frame.
+     *
+     * @param bounds Left, top, right and bottom of each view, relative to the drawable's bounds.
+     *               {@code null} clears the highlights.
+     */
+    public void highlight(@Nullable float[] bounds) {
+        this.pendingHighlights = bounds;
+        this.highlightsPending = true;
+        scheduleFrame();
+    }
+
+    /**
+     * Prints draw-time percentiles, element and invalidation counts. Must be called from the
+     * main thread.
+     *
+     * @param writer The writer to print to.
+     * @param prefix Prefix for every printed line.
+     * @param reset  Clears the collected statistics after printing them.
+     */
+    public void dump(PrintWriter writer, String prefix, boolean reset) {
+        writer.print(prefix);
+        writer.print("SpecDrawable ");
+        writer.print(width);
+        writer.print('x');
+        writer.print(height);
+        writer.print(" density=");
+        writer.println(density);
+
+        String layerPrefix = prefix + "  ";
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            writer.print(layerPrefix);
+            writer.print("Layer z=");
+            writer.println(layers.keyAt(i));
+            layers.valueAt(i).dump(writer, layerPrefix + "  ");
+        }
+
+        writer.print(layerPrefix);
+        writer.print("highlights=");
+        writer.println(highlights != null ? highlights.length / HIGHLIGHT_SIZE : 0);
+
+        writer.print(layerPrefix);
+        writer.println("Draw times");
+        stats.dump(writer, layerPrefix + "  ");
+
+        if (reset) {
+            stats.reset();
         }
-        Grid.setColor(spec.baselineGridColor());
-        Keyline.setColor(spec.keylineColor());
-        Spacing.setColor(spec.spacingColor());
     }
 
-    private void drawSpacings(List<Spacing> spacings, Canvas canvas, int width, int height) {
-        if (spacings == null || spacings.isEmpty()) {
+    private void scheduleFrame() {
+        if (framePending) {
+            stats.onCoalescedUpdate();
             return;
         }
 
-        for (int i = 0, n = spacings.size(); i < n; i++) {
-            spacings.get(i).draw(canvas, density, width, height);
+        if (getCallback() == null) {
+            applyPendingState(); // Not hosted, there are no frames to align with
+        } else {
+            framePending = true;
+            scheduleSelf(applyPendingState, SystemClock.uptimeMillis());
         }
     }
 
-    private void drawBaselineGrid(Grid baselineGrid, Canvas canvas, int width, int height) {
-        if (!showGrid || baselineGrid == null) {
-            return;
+    /**
+     * Applies the changes made since the last frame as one snapshot, invalidating at most once.
+     */
+    private void applyPendingState() {
+        framePending = false;
+
+        boolean flagsChanged = showGrid != pendingShowGrid
+                || flipHorizontal != pendingFlipHorizontal
+                || flipVertical != pendingFlipVertical;
+        showGrid = pendingShowGrid;
+        flipHorizontal = pendingFlipHorizontal;
+        flipVertical = pendingFlipVertical;
+
+        dirtyBounds.setEmpty();
+        labelsChanged = false;
+        boolean specsChanged = false;
+        for (int i = 0, n = pendingSpecs.size(); i < n; i++) {
+            specsChanged |= applySpec(pendingSpecs.keyAt(i), pendingSpecs.valueAt(i));
+        }
+        pendingSpecs.clear();
+
+        boolean highlightsChanged = highlightsPending;
+        if (highlightsPending) {
+            unionBounds(highlights);
+            highlights = pendingHighlights;
+            unionBounds(highlights);
+            pendingHighlights = null;
+            highlightsPending = false;
+        }
+
+        // Measured after the specs are applied, against the geometry about to be drawn
+        boolean inspectionChanged = pendingInspecting || inspector.isActive();
+        if (pendingInspecting) {
+            inspector.inspect(layers, pendingInspectX, pendingInspectY);
+        } else {
+            inspector.clear();
+        }
+
+        if (flagsChanged) {
+            invalidateRecordings();
+            invalidateSelf();
+        } else if (labelsChanged || inspectionChanged) {
+            invalidateSelf();
+        } else if (specsChanged || highlightsChanged) {
+            invalidateDirtyBounds();
+        }
+    }
+
+    /**
+     * @return {@code true} if the layer renders differently, its changed elements are added to
+     * the dirty bounds.
+     */
+    private boolean applySpec(int zOrder, @Nullable Spec spec) {
+        SpecLayer layer = layers.get(zOrder);
+        if (layer == null) {
+            if (spec == null) {
+                return false;
+            }
+            layer = new SpecLayer(labelMetrics);
+            layer.setAlpha(alpha);
+            layer.setColorFilter(colorFilter);
+            layers.put(zOrder, layer);
         }
 
-        canvas.save();
-        if (flipHorizontal) { // Flip H
-            canvas.scale(-1, 1, width / 2, 0);
+        SpecDiff diff = layer.setSpec(spec);
+        if (spec == null) {
+            layers.remove(zOrder);
         }
-        if (flipVertical) { // Flip V
-            canvas.scale(1, -1, 0, height / 2);
+        if (diff.isEmpty()) {
+            stats.onSkippedUpdate();
+            return false; // Nothing to repaint
         }
-        baselineGrid.draw(canvas, density, width, height);
-        canvas.restore();
+
+        layer.prepare(density, width, height);
+        unionBounds(diff.removed());
+        unionBounds(diff.added());
+        return true;
     }
 
-    private void drawKeylines(List<Keyline> keylines, Canvas canvas, int width, int height) {
-        if (keylines == null || keylines.isEmpty()) {
-            return;
+    private void drawHighlights(Canvas canvas) {
+        final float[] rects = highlights;
+        for (int i = 0, n = rects != null ? rects.length : 0; i + HIGHLIGHT_SIZE <= n;
+                i += HIGHLIGHT_SIZE) {
+            canvas.drawRect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3], highlightPaint);
+        }
+    }
+
+    private void invalidateRecordings() {
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            layers.valueAt(i).invalidateRecording();
+        }
+    }
+
+    private void invalidateDirtyBounds() {
+        Rect bounds = getBounds();
+        dirtyBounds.offset(bounds.left, bounds.top);
+
+        partialInvalidation = true;
+        invalidateSelf();
+        partialInvalidation = false;
+    }
+
+    private void unionBounds(@Nullable float[] rects) {
+        for (int i = 0, n = rects != null ? rects.length : 0; i + HIGHLIGHT_SIZE <= n;
+                i += HIGHLIGHT_SIZE) {
+            dirtyBounds.union((int) Math.floor(rects[i]), (int) Math.floor(rects[i + 1]),
+                    (int) Math.ceil(rects[i + 2]), (int) Math.ceil(rects[i + 3]));
         }
+    }
+
+    private void unionBounds(List<SpecElement> elements) {
+        final float outset = Keyline.KEYLINE_STROKE_WIDTH_DIP;
+
+        for (int i = 0, n = elements.size(); i < n; i++) {
+            SpecElement element = elements.get(i);
+            if (element instanceof Keyline && ((Keyline) element).label() != null) {
+                labelsChanged = true;
+            }
+            int length = element.primitiveCount(density, width, height)
+                    * CompiledSpec.PRIMITIVE_SIZE;
+            if (elementPrimitives.length < length) {
+                elementPrimitives = new float[length];
+            }
 
-        for (int i = 0, n = keylines.size(); i < n; i++) {
-            keylines.get(i).draw(canvas, density, width, height);
+            final float[] p = elementPrimitives;
+            length = element.resolve(p, 0, density, width, height);
+            for (int j = 0; j < length; j += CompiledSpec.PRIMITIVE_SIZE) {
+                dirtyBounds.union(
+                        (int) Math.floor(Math.min(p[j], p[j + 2]) - outset),
+                        (int) Math.floor(Math.min(p[j + 1], p[j + 3]) - outset),
+                        (int) Math.ceil(Math.max(p[j], p[j + 2]) + outset),
+                        (int) Math.ceil(Math.max(p[j + 1], p[j + 3]) + outset)
+                );
+            }
         }
     }
 
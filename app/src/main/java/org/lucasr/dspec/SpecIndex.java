@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.util.Arrays;
+
+import static org.lucasr.dspec.CompiledSpec.BATCH_KEYLINES;
+import static org.lucasr.dspec.CompiledSpec.BATCH_SPACINGS;
+import static org.lucasr.dspec.CompiledSpec.PRIMITIVE_SIZE;
+
+/**
+ * Positions of a {@link CompiledSpec}'s keylines and spacing edges, sorted per axis. Finding the
+ * nearest one to a point is a binary search that doesn't allocate, however large the spec is.
+ *
+ * <p>Spacing edges are indexed as if they ran across the whole viewport, like keylines.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecIndex {
+
+    // Sorted positions, in pixels
+    final float[] keylineXs;
+    final float[] keylineYs;
+    final float[] spacingXs;
+    final float[] spacingYs;
+
+    /**
+     * Indexes a compiled spec.
+     *
+     * @param compiledSpec The compiled spec.
+     * @return A {@link SpecIndex}.
+     */
+    static SpecIndex of(CompiledSpec compiledSpec) {
+        final float[] p = compiledSpec.primitives;
+
+        // Keylines, vertical ones have a fixed x
+        int offset = compiledSpec.batchOffsets[BATCH_KEYLINES];
+        int end = offset + compiledSpec.batchLengths[BATCH_KEYLINES];
+        int verticalCount = 0;
+        for (int i = offset; i < end; i += PRIMITIVE_SIZE) {
+            verticalCount += p[i] == p[i + 2] ? 1 : 0;
+        }
+        float[] keylineXs = new float[verticalCount];
+        float[] keylineYs = new float[compiledSpec.primitiveCount(BATCH_KEYLINES) - verticalCount];
+        for (int i = offset, x = 0, y = 0; i < end; i += PRIMITIVE_SIZE) {
+            if (p[i] == p[i + 2]) {
+                keylineXs[x++] = p[i];
+            } else {
+                keylineYs[y++] = p[i + 1];
+            }
+        }
+
+        // Spacings, every rectangle has two edges on each axis
+        offset = compiledSpec.batchOffsets[BATCH_SPACINGS];
+        end = offset + compiledSpec.batchLengths[BATCH_SPACINGS];
+        float[] spacingXs = new float[compiledSpec.primitiveCount(BATCH_SPACINGS) * 2];
+        float[] spacingYs = new float[spacingXs.length];
+        for (int i = offset, j = 0; i < end; i += PRIMITIVE_SIZE, j += 2) {
+            spacingXs[j] = p[i];
+            spacingXs[j + 1] = p[i + 2];
+            spacingYs[j] = p[i + 1];
+            spacingYs[j + 1] = p[i + 3];
+        }
+
+        Arrays.sort(keylineXs);
+        Arrays.sort(keylineYs);
+        Arrays.sort(spacingXs);
+        Arrays.sort(spacingYs);
+        return new SpecIndex(keylineXs, keylineYs, spacingXs, spacingYs);
+    }
+
+    /**
+     * Finds the position closest to a value.
+     *
+     * @param positions Sorted positions.
+     * @param value     The value to look up.
+     * @return The closest position, {@link Float#NaN} if there are no positions.
+     */
+    static float nearest(float[] positions, float value) {
+        final int n = positions.length;
+        if (n == 0) {
+            return Float.NaN;
+        }
+
+        int i = Arrays.binarySearch(positions, value);
+        if (i >= 0) {
+            return positions[i];
+        }
+
+        i = -i - 1; // Insertion point
+        if (i == 0) {
+            return positions[0];
+        } else if (i == n) {
+            return positions[n - 1];
+        }
+        float before = positions[i - 1];
+        float after = positions[i];
+        return value - before <= after - value ? before : after;
+    }
+
+    private SpecIndex(float[] keylineXs, float[] keylineYs,
+                      float[] spacingXs, float[] spacingYs) {
+        this.keylineXs = keylineXs;
+        this.keylineYs = keylineYs;
+        this.spacingXs = spacingXs;
+        this.spacingYs = spacingYs;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+import static android.graphics.Paint.ANTI_ALIAS_FLAG;
+
+/**
+ * Measures the distance from a point to the nearest keyline and spacing edge on each axis, and
+ * draws it on top of the spec. Lookups go through every layer's {@link SpecIndex} and the readout
+ * is formatted into reused buffers, so following a finger doesn't allocate.
+ *
+ * <p>Not thread-safe, must be used from the main thread.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecInspector {
+
+    // Constants
+    private static final int KEYLINE_COLOR = 0xFFFF4081;
+    private static final int SPACING_COLOR = 0xFF00BCD4;
+    private static final int READOUT_COLOR = 0xFFFFFFFF;
+    private static final int READOUT_BACKGROUND_COLOR = 0xCC212121;
+    private static final float STROKE_WIDTH_DIP = 1f;
+    private static final float TEXT_SIZE_DIP = 12f;
+    private static final float READOUT_PADDING_DIP = 4f;
+    private static final float READOUT_OFFSET_DIP = 48f; // Keeps the readout clear of the finger
+    private static final int READOUT_LENGTH = 64;
+
+    // Readout
+    private static final String KEYLINE_PREFIX = "keyline x ";
+    private static final String SPACING_PREFIX = "spacing x ";
+    private static final String Y_SEPARATOR = "  y ";
+    private static final String UNIT = "dp";
+
+    // Paints
+    private final Paint keylinePaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint spacingPaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint readoutPaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint readoutBackgroundPaint = new Paint();
+
+    // Attributes
+    private final float density;
+    private final float padding;
+    private final float offset;
+    private final float ascent;
+    private final float lineHeight;
+    private boolean active = false;
+    private float x;
+    private float y;
+
+    // Nearest positions, in pixels, NaN if there are none
+    private float keylineX;
+    private float keylineY;
+    private float spacingX;
+    private float spacingY;
+
+    private final char[] keylineReadout = new char[READOUT_LENGTH];
+    private final char[] spacingReadout = new char[READOUT_LENGTH];
+    private int keylineReadoutLength;
+    private int spacingReadoutLength;
+    private float readoutWidth;
+
+    SpecInspector(float density) {
+        this.density = density;
+        this.padding = READOUT_PADDING_DIP * density;
+        this.offset = READOUT_OFFSET_DIP * density;
+
+        keylinePaint.setColor(KEYLINE_COLOR);
+        keylinePaint.setStrokeWidth(STROKE_WIDTH_DIP * density);
+        spacingPaint.setColor(SPACING_COLOR);
+        spacingPaint.setStrokeWidth(STROKE_WIDTH_DIP * density);
+        readoutPaint.setColor(READOUT_COLOR);
+        readoutPaint.setTextSize(TEXT_SIZE_DIP * density);
+        readoutBackgroundPaint.setColor(READOUT_BACKGROUND_COLOR);
+
+        this.ascent = -readoutPaint.ascent();
+        this.lineHeight = ascent + readoutPaint.descent();
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Looks up the nearest keylines and spacing edges to a point, across all layers.
+     *
+     * @param layers The layers to measure, each one must be prepared for the current bounds.
+     * @param x      Horizontal position of the point, in pixels.
+     * @param y      Vertical position of the point, in pixels.
+     */
+    void inspect(SparseArray<SpecLayer> layers, float x, float y) {
+        this.active = true;
+        this.x = x;
+        this.y = y;
+
+        keylineX = keylineY = spacingX = spacingY = Float.NaN;
+        for (int i = 0, n = layers.size(); i < n; i++) {
+            SpecIndex index = layers.valueAt(i).index();
+            if (index == null) {
+                continue;
+            }
+            keylineX = closer(x, keylineX, SpecIndex.nearest(index.keylineXs, x));
+            keylineY = closer(y, keylineY, SpecIndex.nearest(index.keylineYs, y));
+            spacingX = closer(x, spacingX, SpecIndex.nearest(index.spacingXs, x));
+            spacingY = closer(y, spacingY, SpecIndex.nearest(index.spacingYs, y));
+        }
+
+        keylineReadoutLength = format(keylineReadout, KEYLINE_PREFIX, keylineX - x, keylineY - y);
+        spacingReadoutLength = format(spacingReadout, SPACING_PREFIX, spacingX - x, spacingY - y);
+        readoutWidth = Math.max(
+                readoutPaint.measureText(keylineReadout, 0, keylineReadoutLength),
+                readoutPaint.measureText(spacingReadout, 0, spacingReadoutLength));
+    }
+
+    void clear() {
+        active = false;
+    }
+
+    void draw(Canvas canvas, int width, int height) {
+        if (!active) {
+            return;
+        }
+
+        // Distances
+        drawDistances(canvas, spacingX, spacingY, spacingPaint);
+        drawDistances(canvas, keylineX, keylineY, keylinePaint);
+
+        // Readout, above the point unless there's no room for it
+        float readoutRight = readoutWidth + padding * 2;
+        float readoutBottom = lineHeight * 2 + padding * 2;
+        float left = Math.max(0, Math.min(x - readoutRight / 2, width - readoutRight));
+        float top = y - offset - readoutBottom;
+        if (top < 0) {
+            top = Math.min(y + offset, height - readoutBottom);
+        }
+
+        canvas.drawRect(left, top, left + readoutRight, top + readoutBottom,
+                readoutBackgroundPaint);
+        float baseline = top + padding + ascent;
+        canvas.drawText(keylineReadout, 0, keylineReadoutLength, left + padding, baseline,
+                readoutPaint);
+        canvas.drawText(spacingReadout, 0, spacingReadoutLength, left + padding,
+                baseline + lineHeight, readoutPaint);
+    }
+
+    private void drawDistances(Canvas canvas, float toX, float toY, Paint paint) {
+        if (!Float.isNaN(toX)) {
+            canvas.drawLine(x, y, toX, y, paint);
+        }
+        if (!Float.isNaN(toY)) {
+            canvas.drawLine(x, y, x, toY, paint);
+        }
+    }
+
+    /**
+     * Writes a readout such as {@code keyline x 16dp  y 4.5dp}, {@code -} stands for no distance.
+     *
+     * @return The length of the readout.
+     */
+    private int format(char[] out, String prefix, float dx, float dy) {
+        int length = append(out, 0, prefix);
+        length = appendDistance(out, length, dx);
+        length = append(out, length, Y_SEPARATOR);
+        return appendDistance(out, length, dy);
+    }
+
+    private int appendDistance(char[] out, int at, float pixels) {
+        if (Float.isNaN(pixels)) {
+            out[at] = '-';
+            return at + 1;
+        }
+
+        int tenths = Math.round(Math.abs(pixels) / density * 10);
+        at = appendInt(out, at, tenths / 10);
+        if (tenths % 10 != 0) {
+            out[at++] = '.';
+            out[at++] = (char) ('0' + tenths % 10);
+        }
+        return append(out, at, UNIT);
+    }
+
+    private static int append(char[] out, int at, String text) {
+        text.getChars(0, text.length(), out, at);
+        return at + text.length();
+    }
+
+    private static int appendInt(char[] out, int at, int value) {
+        int end = at;
+        do {
+            out[end++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        // Digits were written backwards
+        for (int i = at, j = end - 1; i < j; i++, j--) {
+            char digit = out[i];
+            out[i] = out[j];
+            out[j] = digit;
+        }
+        return end;
+    }
+
+    private static float closer(float value, float a, float b) {
+        if (Float.isNaN(a)) {
+            return b;
+        } else if (Float.isNaN(b)) {
+            return a;
+        }
+        return Math.abs(a - value) <= Math.abs(b - value) ? a : b;
+    }
+
+}
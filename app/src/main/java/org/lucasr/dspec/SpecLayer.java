@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.support.annotation.ColorInt;
+import android.support.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+import static android.graphics.Paint.ANTI_ALIAS_FLAG;
+import static org.lucasr.dspec.CompiledSpec.BATCH_BASELINE_GRID;
+import static org.lucasr.dspec.CompiledSpec.BATCH_KEYLINES;
+import static org.lucasr.dspec.CompiledSpec.BATCH_SPACINGS;
+import static org.lucasr.dspec.CompiledSpec.PRIMITIVE_SIZE;
+import static org.lucasr.dspec.DrawStats.CATEGORY_BASELINE_GRID;
+import static org.lucasr.dspec.DrawStats.CATEGORY_KEYLINES;
+import static org.lucasr.dspec.DrawStats.CATEGORY_REPLAY;
+import static org.lucasr.dspec.DrawStats.CATEGORY_SPACINGS;
+
+/**
+ * A single {@link Spec} composited by {@link SpecDrawable}. Every layer owns its paints, its
+ * {@link CompiledSpec} and its recording, so updating one layer doesn't re-resolve the others.
+ *
+ * @author Ragunath Jawahar
+ */
+class SpecLayer {
+
+    // Paints
+    private final Paint gridPaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint keylinePaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint spacingPaint = new Paint(ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(ANTI_ALIAS_FLAG);
+
+    // Attributes
+    private Spec spec;
+    private CompiledSpec compiledSpec;
+    private KeylineLabels labels;
+    private SpecIndex index; // Built on the first lookup
+    private int alpha = 0xFF;
+    private final LabelMetrics labelMetrics;
+
+    /**
+     * The resolved spec, recorded once and replayed until the spec, bounds, flip state or paint
+     * state changes.
+     */
+    private final Picture recording = new Picture();
+    private boolean recordingValid = false;
+
+    SpecLayer(LabelMetrics labelMetrics) {
+        this.labelMetrics = labelMetrics;
+        keylinePaint.setStrokeWidth(Keyline.KEYLINE_STROKE_WIDTH_DIP);
+    }
+
+    @Nullable
+    Spec spec() {
+        return spec;
+    }
+
+    /**
+     * Replaces the layer's spec, if it renders differently from the current one.
+     *
+     * @param spec The new spec, can be {@code null}.
+     * @return The difference between the current and the new spec.
+     */
+    SpecDiff setSpec(@Nullable Spec spec) {
+        SpecDiff diff = SpecDiff.between(this.spec, spec);
+        if (!diff.isEmpty()) {
+            this.spec = spec;
+            this.compiledSpec = null;
+            this.index = null;
+            invalidateRecording();
+        }
+        return diff;
+    }
+
+    void setAlpha(int alpha) {
+        this.alpha = alpha;
+        applyColors();
+        invalidateRecording();
+    }
+
+    void setColorFilter(@Nullable ColorFilter colorFilter) {
+        gridPaint.setColorFilter(colorFilter);
+        keylinePaint.setColorFilter(colorFilter);
+        spacingPaint.setColorFilter(colorFilter);
+        labelPaint.setColorFilter(colorFilter);
+        invalidateRecording();
+    }
+
+    /**
+     * Compiles the spec and lays out its labels for the given viewport, unless this was already
+     * done for it.
+     */
+    void prepare(float density, int width, int height) {
+        if (spec == null) {
+            return;
+        }
+
+        if (compiledSpec == null || !compiledSpec.isCompiledFor(density, width, height)) {
+            compiledSpec = spec.compile(density, width, height);
+            labelMetrics.setDensity(density);
+            labelPaint.setTextSize(labelMetrics.textSize());
+            labels = KeylineLabels.layout(spec.keylines(), compiledSpec, labelMetrics);
+            index = null;
+            applyColors();
+            invalidateRecording();
+        }
+    }
+
+    /**
+     * @return The layer's positions sorted per axis, {@code null} until the spec is compiled.
+     */
+    @Nullable
+    SpecIndex index() {
+        if (index == null && compiledSpec != null) {
+            index = SpecIndex.of(compiledSpec);
+        }
+        return index;
+    }
+
+    void invalidateRecording() {
+        recordingValid = false;
+    }
+
+    /**
+     * Draws the layer, replaying its recording when {@code useRecording} is set.
+     */
+    void draw(Canvas canvas, boolean useRecording, float density, int width, int height,
+              boolean showGrid, boolean flipHorizontal, boolean flipVertical, DrawStats stats) {
+        if (spec == null) {
+            return;
+        }
+        prepare(density, width, height);
+
+        if (!useRecording) {
+            drawSpec(canvas, showGrid, flipHorizontal, flipVertical, stats);
+            return;
+        }
+
+        if (!recordingValid) {
+            Canvas recordingCanvas = recording.beginRecording(width, height);
+            drawSpec(recordingCanvas, showGrid, flipHorizontal, flipVertical, stats);
+            recording.endRecording();
+            recordingValid = true;
+            stats.onRecording();
+        } else {
+            stats.onReplay();
+        }
+
+        long start = System.nanoTime();
+        canvas.drawPicture(recording);
+        stats.record(CATEGORY_REPLAY, System.nanoTime() - start);
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        List<Keyline> keylines = spec != null ? spec.keylines() : null;
+        List<Spacing> spacings = spec != null ? spec.spacings() : null;
+
+        writer.print(prefix);
+        writer.print("keylines=");
+        writer.print(keylines != null ? keylines.size() : 0);
+        writer.print(" spacings=");
+        writer.print(spacings != null ? spacings.size() : 0);
+        writer.print(" gridLines=");
+        writer.print(compiledSpec != null
+                ? compiledSpec.primitiveCount(BATCH_BASELINE_GRID) : 0);
+        writer.print(" labels=");
+        writer.print(labels != null ? labels.count : 0);
+        writer.print('/');
+        writer.println(labels != null ? labels.total : 0);
+    }
+
+    private void applyColors() {
+        if (compiledSpec == null) {
+            return;
+        }
+        applyColor(spacingPaint, compiledSpec.batchColors[BATCH_SPACINGS]);
+        applyColor(gridPaint, compiledSpec.batchColors[BATCH_BASELINE_GRID]);
+        applyColor(keylinePaint, compiledSpec.batchColors[BATCH_KEYLINES]);
+        applyColor(labelPaint, compiledSpec.batchColors[BATCH_KEYLINES]);
+    }
+
+    /**
+     * Modulates the color's own alpha with the drawable's alpha instead of overwriting it.
+     */
+    private void applyColor(Paint paint, @ColorInt int color) {
+        paint.setColor(color);
+        paint.setAlpha(((color >>> 24) * alpha) / 0xFF);
+    }
+
+    private void drawSpec(Canvas canvas, boolean showGrid,
+                          boolean flipHorizontal, boolean flipVertical, DrawStats stats) {
+        final CompiledSpec compiledSpec = this.compiledSpec;
+
+        // Start painting!
+        long start = System.nanoTime();
+        drawRects(canvas, compiledSpec, BATCH_SPACINGS, spacingPaint);
+        long end = System.nanoTime();
+        stats.record(CATEGORY_SPACINGS, end - start);
+
+        if (showGrid) {
+            start = end;
+            canvas.save();
+            if (flipHorizontal) { // Flip H
+                canvas.scale(-1, 1, compiledSpec.width / 2, 0);
+            }
+            if (flipVertical) { // Flip V
+                canvas.scale(1, -1, 0, compiledSpec.height / 2);
+            }
+            drawLines(canvas, compiledSpec, BATCH_BASELINE_GRID, gridPaint);
+            canvas.restore();
+            end = System.nanoTime();
+            stats.record(CATEGORY_BASELINE_GRID, end - start);
+        }
+
+        start = end;
+        drawLines(canvas, compiledSpec, BATCH_KEYLINES, keylinePaint);
+        drawLabels(canvas, labels, labelPaint);
+        stats.record(CATEGORY_KEYLINES, System.nanoTime() - start);
+    }
+
+    private static void drawRects(Canvas canvas, CompiledSpec compiledSpec, int batch,
+                                  Paint paint) {
+        final float[] primitives = compiledSpec.primitives;
+        final int offset = compiledSpec.batchOffsets[batch];
+        for (int i = offset, n = offset + compiledSpec.batchLengths[batch];
+                i < n; i += PRIMITIVE_SIZE) {
+            canvas.drawRect(primitives[i], primitives[i + 1],
+                    primitives[i + 2], primitives[i + 3], paint);
+        }
+    }
+
+    private static void drawLabels(Canvas canvas, KeylineLabels labels, Paint paint) {
+        final float[] origins = labels.origins;
+        for (int i = 0, n = labels.count; i < n; i++) {
+            canvas.drawText(labels.texts[i], origins[i * 2], origins[i * 2 + 1], paint);
+        }
+    }
+
+    private static void drawLines(Canvas canvas, CompiledSpec compiledSpec, int batch,
+                                  Paint paint) {
+        final int length = compiledSpec.batchLengths[batch];
+        if (length > 0) {
+            canvas.drawLines(compiledSpec.primitives, compiledSpec.batchOffsets[batch],
+                    length, paint);
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class DrawTimeHistogramTest {
+
+    private static final long MICROS = 1000;
+
+    @Test
+    public void emptyHistogramReportsZero() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.meanMicros());
+        assertEquals(0, histogram.maxMicros());
+        assertEquals(0, histogram.percentileMicros(50));
+    }
+
+    @Test
+    public void record_tracksCountMeanAndMax() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        histogram.record(100 * MICROS);
+        histogram.record(300 * MICROS + 999); // Sub-microsecond part is dropped
+        histogram.record(200 * MICROS);
+
+        assertEquals(3, histogram.count());
+        assertEquals(200, histogram.meanMicros());
+        assertEquals(300, histogram.maxMicros());
+    }
+
+    @Test
+    public void smallDurationsHaveExactBuckets() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        histogram.record(0);
+        histogram.record(1 * MICROS);
+        histogram.record(2 * MICROS);
+        histogram.record(3 * MICROS);
+
+        assertEquals(1, histogram.percentileMicros(25));
+        assertEquals(2, histogram.percentileMicros(50));
+        assertEquals(3, histogram.percentileMicros(75));
+        assertEquals(3, histogram.percentileMicros(100));
+    }
+
+    @Test
+    public void percentileMicros_reportsUpperBoundOfTheBucket() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        for (long micros = 1; micros <= 100; micros++) {
+            histogram.record(micros * MICROS);
+        }
+
+        assertEquals(2, histogram.percentileMicros(0)); // [1, 2)
+        assertEquals(56, histogram.percentileMicros(50)); // [48, 56)
+        assertEquals(96, histogram.percentileMicros(90)); // [80, 96)
+        assertEquals(100, histogram.percentileMicros(100)); // [96, 112), capped by the max
+    }
+
+    @Test
+    public void percentileMicros_staysWithinTheRelativeError() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        for (long micros = 4; micros < 1 << 20; micros += 1 + micros / 64) {
+            histogram.reset();
+            histogram.record(micros * MICROS);
+            histogram.record(Long.MAX_VALUE); // Keeps the max from capping the bucket bound
+
+            long reported = histogram.percentileMicros(50);
+            assertTrue(micros + " reported as " + reported,
+                    reported > micros && reported <= micros * 1.25);
+        }
+    }
+
+    @Test
+    public void record_clampsDurationsOutOfRange() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        histogram.record(-5 * MICROS);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(2, histogram.count());
+        assertEquals(Long.MAX_VALUE / 1000, histogram.maxMicros());
+        assertEquals(1, histogram.percentileMicros(50));
+        assertTrue(histogram.percentileMicros(100) > 30 * 1000 * 1000);
+    }
+
+    @Test
+    public void reset_clearsEverything() throws Exception {
+        DrawTimeHistogram histogram = new DrawTimeHistogram();
+        histogram.record(100 * MICROS);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.meanMicros());
+        assertEquals(0, histogram.maxMicros());
+        assertEquals(0, histogram.percentileMicros(100));
+    }
+
+}
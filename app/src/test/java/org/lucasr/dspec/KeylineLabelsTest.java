@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class KeylineLabelsTest {
+
+    // Labels are 6px per character and 10px tall, laid out at 1x with 2px of padding
+    private static final LabelMetrics METRICS = new LabelMetrics() {
+        @Override
+        float width(String label) {
+            return label.length() * 6;
+        }
+
+        @Override
+        float ascent() {
+            return 8;
+        }
+
+        @Override
+        float height() {
+            return 10;
+        }
+    };
+
+    @Test
+    public void layout_placesLabelsNextToTheirKeylines() throws Exception {
+        KeylineLabels labels = layout(200, 100,
+                "{\"offset\": 16, \"from\": \"left\", \"label\": \"abc\"},"
+                + "{\"offset\": 50, \"from\": \"top\", \"label\": \"ab\"}");
+
+        assertEquals(2, labels.count);
+        assertEquals(2, labels.total);
+        assertArrayEquals(new String[] { "abc", "ab" }, labels.texts);
+        assertArrayEquals(new float[] { 18, 10, 2, 46 }, labels.origins, 0);
+    }
+
+    @Test
+    public void layout_flipsLabelsThatWouldLeaveTheBounds() throws Exception {
+        KeylineLabels labels = layout(200, 100,
+                "{\"offset\": 8, \"from\": \"right\", \"label\": \"abc\"},"
+                + "{\"offset\": 4, \"from\": \"top\", \"label\": \"ab\"}");
+
+        assertEquals(2, labels.count);
+        assertArrayEquals(new float[] { 172, 10, 2, 14 }, labels.origins, 0);
+    }
+
+    @Test
+    public void layout_slidesOverlappingLabelsAlongTheKeyline() throws Exception {
+        KeylineLabels labels = layout(200, 100,
+                "{\"offset\": 16, \"from\": \"left\", \"label\": \"abcd\"},"
+                + "{\"offset\": 20, \"from\": \"left\", \"label\": \"abcd\"},"
+                + "{\"offset\": 50, \"from\": \"top\", \"label\": \"abc\"},"
+                + "{\"offset\": 50, \"from\": \"bottom\", \"label\": \"abc\"}");
+
+        assertEquals(4, labels.count);
+        assertArrayEquals(new float[] { 18, 10, 22, 22, 2, 46, 22, 46 }, labels.origins, 0);
+    }
+
+    @Test
+    public void layout_leavesOutLabelsThatDontFit() throws Exception {
+        KeylineLabels labels = layout(200, 30,
+                "{\"offset\": 16, \"from\": \"left\", \"label\": \"a\"},"
+                + "{\"offset\": 16, \"from\": \"left\", \"label\": \"b\"},"
+                + "{\"offset\": 16, \"from\": \"left\", \"label\": \"c\"},"
+                + "{\"offset\": 100, \"from\": \"left\", \"label\": \""
+                + "0123456789012345678901234567890123456789\"}");
+
+        assertEquals(2, labels.count);
+        assertEquals(4, labels.total);
+        assertEquals("a", labels.texts[0]);
+        assertEquals("b", labels.texts[1]);
+    }
+
+    @Test
+    public void layout_skipsUnlabelledKeylines() throws Exception {
+        KeylineLabels labels = layout(200, 100,
+                "{\"offset\": 16, \"from\": \"left\"},"
+                + "{\"offset\": 72, \"from\": \"left\", \"label\": \"abc\"}");
+
+        assertEquals(1, labels.count);
+        assertEquals(1, labels.total);
+        assertArrayEquals(new float[] { 74, 10 }, labels.origins, 0);
+    }
+
+    @Test
+    public void layout_withoutKeylinesIsEmpty() throws Exception {
+        Spec spec = SpecParser.fromJson("{}", null);
+        KeylineLabels labels = KeylineLabels.layout(spec.keylines(), spec.compile(1, 200, 100),
+                METRICS);
+
+        assertEquals(0, labels.count);
+        assertEquals(0, labels.total);
+    }
+
+    private static KeylineLabels layout(int width, int height, String keylines)
+            throws SpecParseException {
+        Spec spec = SpecParser.fromJson("{\"keylines\": [" + keylines + "]}", null);
+        return KeylineLabels.layout(spec.keylines(), spec.compile(1, width, height), METRICS);
+    }
+
+}
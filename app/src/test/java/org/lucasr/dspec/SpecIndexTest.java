@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecIndexTest {
+
+    private static final float[] POSITIONS = { 16, 32, 72, 368 };
+
+    @Test
+    public void of_sortsPositionsPerAxis() throws Exception {
+        Spec spec = SpecParser.fromJson("{"
+                + "\"keylines\": ["
+                + "  {\"offset\": 16, \"from\": \"right\"},"
+                + "  {\"offset\": 24, \"from\": \"top\"},"
+                + "  {\"offset\": 16, \"from\": \"left\"},"
+                + "  {\"offset\": 0, \"from\": \"horizontal_center\"}"
+                + "],"
+                + "\"spacings\": [{\"offset\": 8, \"size\": 8, \"from\": \"left\"}]"
+                + "}", null);
+
+        SpecIndex index = SpecIndex.of(spec.compile(2, 400, 800));
+
+        assertArrayEquals(new float[] { 32, 200, 368 }, index.keylineXs, 0);
+        assertArrayEquals(new float[] { 48 }, index.keylineYs, 0);
+        assertArrayEquals(new float[] { 16, 32 }, index.spacingXs, 0);
+        assertArrayEquals(new float[] { 0, 800 }, index.spacingYs, 0);
+    }
+
+    @Test
+    public void of_indexesEmptySpecs() throws Exception {
+        SpecIndex index = SpecIndex.of(SpecParser.fromJson("{}", null).compile(1, 100, 100));
+
+        assertEquals(0, index.keylineXs.length);
+        assertEquals(0, index.keylineYs.length);
+        assertEquals(0, index.spacingXs.length);
+        assertEquals(0, index.spacingYs.length);
+    }
+
+    @Test
+    public void nearest_returnsExactMatches() throws Exception {
+        assertEquals(72, SpecIndex.nearest(POSITIONS, 72), 0);
+    }
+
+    @Test
+    public void nearest_returnsTheClosestNeighbour() throws Exception {
+        assertEquals(32, SpecIndex.nearest(POSITIONS, 40), 0);
+        assertEquals(72, SpecIndex.nearest(POSITIONS, 60), 0);
+        assertEquals(72, SpecIndex.nearest(POSITIONS, 219), 0);
+        assertEquals(368, SpecIndex.nearest(POSITIONS, 221), 0);
+    }
+
+    @Test
+    public void nearest_prefersTheLowerPositionOnTies() throws Exception {
+        assertEquals(16, SpecIndex.nearest(POSITIONS, 24), 0);
+    }
+
+    @Test
+    public void nearest_clampsToTheEnds() throws Exception {
+        assertEquals(16, SpecIndex.nearest(POSITIONS, -100), 0);
+        assertEquals(368, SpecIndex.nearest(POSITIONS, 1000), 0);
+    }
+
+    @Test
+    public void nearest_isNaNWithoutPositions() throws Exception {
+        assertTrue(Float.isNaN(SpecIndex.nearest(new float[0], 10)));
+    }
+
+}
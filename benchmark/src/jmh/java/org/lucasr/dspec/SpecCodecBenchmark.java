@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Decodes a binary spec payload the way {@code KeylinesService} does.
+ *
+ * @author Ragunath Jawahar
+ */
+@State(Scope.Benchmark)
+public class SpecCodecBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int elementCount;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = SpecCodec.encode(SpecGenerator.spec(elementCount, elementCount));
+    }
+
+    @Benchmark
+    public Spec decode() throws SpecParseException {
+        return SpecCodec.decode(payload);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.util.DisplayMetrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Draws specs into a {@link Canvas} that only counts draw calls, so the numbers reflect the
+ * drawable's own overhead rather than rasterization.
+ *
+ * @author Ragunath Jawahar
+ */
+@State(Scope.Benchmark)
+public class SpecDrawableBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int elementCount;
+
+    @Param({ "1.0", "2.0", "3.0", "4.0" })
+    public float density;
+
+    @Param({ "720x1280", "1440x2560", "2560x1600" })
+    public String viewport;
+
+    private SpecDrawable specDrawable;
+    private Spec[] specs;
+    private Spec nextSpec;
+    private Canvas canvas;
+    private int width;
+    private int height;
+    private int frame;
+
+    @Setup
+    public void setUp() {
+        DisplayMetrics displayMetrics = new DisplayMetrics();
+        displayMetrics.density = density;
+
+        String[] dimensions = viewport.split("x");
+        width = Integer.parseInt(dimensions[0]);
+        height = Integer.parseInt(dimensions[1]);
+
+        specs = new Spec[] {
+                SpecGenerator.spec(elementCount, 1),
+                SpecGenerator.spec(elementCount, 2)
+        };
+        canvas = new Canvas();
+        specDrawable = new SpecDrawable(new Resources(displayMetrics));
+        specDrawable.setBounds(0, 0, width, height);
+        specDrawable.setSpec(specs[0]);
+        specDrawable.draw(canvas);
+    }
+
+    /**
+     * Copies the spec {@link #setSpecAndDraw()} sets next. A spec remembers its compiled form, a
+     * copy has to be compiled again like a spec the app just received.
+     */
+    @Setup(Level.Invocation)
+    public void copyNextSpec() {
+        nextSpec = SpecGenerator.copy(specs[frame & 1]);
+    }
+
+    /**
+     * Steady state, nothing changed since the last frame.
+     */
+    @Benchmark
+    public Canvas draw() {
+        specDrawable.draw(canvas);
+        return canvas;
+    }
+
+    /**
+     * A notification toggle, the spec has to be re-issued but not recompiled.
+     */
+    @Benchmark
+    public Canvas flipAndDraw() {
+        specDrawable.flipHorizontal((frame++ & 1) == 0);
+        specDrawable.draw(canvas);
+        return canvas;
+    }
+
+    /**
+     * A new spec, diffed, compiled and issued.
+     */
+    @Benchmark
+    public Canvas setSpecAndDraw() {
+        frame++;
+        specDrawable.setSpec(nextSpec);
+        specDrawable.draw(canvas);
+        return canvas;
+    }
+
+    /**
+     * Compilation alone, for a spec that was never compiled.
+     */
+    @Benchmark
+    public CompiledSpec compile() {
+        return SpecCompiler.compile(nextSpec, density, width, height);
+    }
+
+}
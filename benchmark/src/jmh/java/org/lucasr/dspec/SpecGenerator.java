@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic specs for benchmarks. Specs are deterministic for a given element count
+ * and seed, half of the elements are keylines and the other half are spacings.
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecGenerator {
+
+    // Constants
+    private static final From[] FROM_VALUES = From.values();
+    private static final int MAX_OFFSET_DIP = 400;
+    private static final int MAX_SIZE_DIP = 72;
+
+    /**
+     * Generates a {@link Spec}.
+     *
+     * @param elementCount Total number of keylines and spacings.
+     * @param seed         Seed for the random generator.
+     * @return A {@link Spec}.
+     */
+    static Spec spec(int elementCount, long seed) {
+        Random random = new Random(seed);
+        int keylineCount = elementCount / 2;
+        int spacingCount = elementCount - keylineCount;
+
+        List<Keyline> keylines = new ArrayList<>(keylineCount);
+        for (int i = 0; i < keylineCount; i++) {
+            keylines.add(new Keyline(random.nextInt(MAX_OFFSET_DIP), randomFrom(random),
+                    "keyline-" + i));
+        }
+
+        List<Spacing> spacings = new ArrayList<>(spacingCount);
+        for (int i = 0; i < spacingCount; i++) {
+            spacings.add(new Spacing(random.nextInt(MAX_OFFSET_DIP),
+                    1 + random.nextInt(MAX_SIZE_DIP), randomFrom(random)));
+        }
+
+        return Spec.builder()
+                .baselineGrid(new Grid(4))
+                .keylines(keylines)
+                .spacings(spacings)
+                .build();
+    }
+
+    /**
+     * Generates the JSON representation of the spec returned by {@link #spec(int, long)} for
+     * the same arguments.
+     *
+     * @param elementCount Total number of keylines and spacings.
+     * @param seed         Seed for the random generator.
+     * @return A JSON spec.
+     */
+    static String json(int elementCount, long seed) {
+        Random random = new Random(seed);
+        int keylineCount = elementCount / 2;
+        int spacingCount = elementCount - keylineCount;
+
+        StringBuilder json = new StringBuilder(elementCount * 64);
+        json.append("{\"baselineGridCellSize\":4,\"keylines\":[");
+        for (int i = 0; i < keylineCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"offset\":").append(random.nextInt(MAX_OFFSET_DIP))
+                    .append(",\"from\":\"").append(randomFrom(random).name())
+                    .append("\",\"label\":\"keyline-").append(i).append("\"}");
+        }
+
+        json.append("],\"spacings\":[");
+        for (int i = 0; i < spacingCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"offset\":").append(random.nextInt(MAX_OFFSET_DIP))
+                    .append(",\"size\":").append(1 + random.nextInt(MAX_SIZE_DIP))
+                    .append(",\"from\":\"").append(randomFrom(random).name()).append("\"}");
+        }
+        json.append("]}");
+
+        return json.toString();
+    }
+
+    /**
+     * Copies a {@link Spec}. The copy is equal to the spec, but sharing its elements rather than
+     * its compiled form, it is compiled again when drawn.
+     *
+     * @param spec The spec to copy.
+     * @return A new {@link Spec}.
+     */
+    static Spec copy(Spec spec) {
+        return Spec.builder()
+                .baselineGrid(spec.baselineGrid())
+                .baselineGridColor(spec.baselineGridColor())
+                .keylines(spec.keylines())
+                .keylinesColor(spec.keylineColor())
+                .spacings(spec.spacings())
+                .spacingsColor(spec.spacingColor())
+                .build();
+    }
+
+    private static From randomFrom(Random random) {
+        return FROM_VALUES[random.nextInt(FROM_VALUES.length)];
+    }
+
+    private SpecGenerator() {
+        throw new AssertionError("No instances.");
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses a spec payload the way {@code KeylinesService} does.
+ *
+ * @author Ragunath Jawahar
+ */
+@State(Scope.Benchmark)
+public class SpecParserBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int elementCount;
+
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        payload = SpecGenerator.json(elementCount, elementCount);
+    }
+
+    @Benchmark
+    public Spec fromJson() throws SpecParseException {
+        return SpecParser.fromJson(payload, null);
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Benchmark shadow. Counts draw calls instead of rasterizing, subclasses can override the draw
+ * methods to record them.
+ */
+public class Canvas {
+
+    private int saveCount;
+    private long drawCallCount;
+
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+
+    public int save() {
+        return saveCount++;
+    }
+
+    public void restore() {
+        saveCount--;
+    }
+
+    public void scale(float sx, float sy, float px, float py) {
+        // No-op
+    }
+
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        drawCallCount++;
+    }
+
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        drawCallCount++;
+    }
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        drawCallCount++;
+    }
+
+    public void drawText(String text, float x, float y, Paint paint) {
+        drawCallCount++;
+    }
+
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        drawCallCount++;
+    }
+
+    public void drawPicture(Picture picture) {
+        drawCallCount++;
+    }
+
+    public long getDrawCallCount() {
+        return drawCallCount;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Benchmark shadow, holds state only.
+ */
+public class Paint {
+
+    public static final int ANTI_ALIAS_FLAG = 0x01;
+
+    private int flags;
+    private int color;
+    private float strokeWidth;
+    private float textSize = 12f;
+    private ColorFilter colorFilter;
+
+    public Paint() {
+        this(0);
+    }
+
+    public Paint(int flags) {
+        this.flags = flags;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public void setColor(int color) {
+        this.color = color;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public void setAlpha(int alpha) {
+        this.color = (color & 0x00FFFFFF) | ((alpha & 0xFF) << 24);
+    }
+
+    public int getAlpha() {
+        return color >>> 24;
+    }
+
+    public void setStrokeWidth(float width) {
+        this.strokeWidth = width;
+    }
+
+    public float getStrokeWidth() {
+        return strokeWidth;
+    }
+
+    public void setTextSize(float textSize) {
+        this.textSize = textSize;
+    }
+
+    public float getTextSize() {
+        return textSize;
+    }
+
+    /**
+     * Approximates an average glyph advance of half the text size.
+     */
+    public float measureText(String text) {
+        return text.length() * textSize * 0.5f;
+    }
+
+    public float measureText(char[] text, int index, int count) {
+        return count * textSize * 0.5f;
+    }
+
+    public float ascent() {
+        return -textSize * 0.9f;
+    }
+
+    public float descent() {
+        return textSize * 0.25f;
+    }
+
+    public ColorFilter setColorFilter(ColorFilter filter) {
+        this.colorFilter = filter;
+        return filter;
+    }
+
+    public ColorFilter getColorFilter() {
+        return colorFilter;
+    }
+
+}
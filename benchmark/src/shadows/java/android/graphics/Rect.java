@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Benchmark shadow, same semantics as the framework class for the members it has.
+ */
+public final class Rect {
+
+    public int left;
+    public int top;
+    public int right;
+    public int bottom;
+
+    public Rect() {
+        // No-op
+    }
+
+    public Rect(int left, int top, int right, int bottom) {
+        set(left, top, right, bottom);
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public boolean isEmpty() {
+        return left >= right || top >= bottom;
+    }
+
+    public void set(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public void set(Rect src) {
+        set(src.left, src.top, src.right, src.bottom);
+    }
+
+    public void setEmpty() {
+        left = right = top = bottom = 0;
+    }
+
+    public void offset(int dx, int dy) {
+        left += dx;
+        top += dy;
+        right += dx;
+        bottom += dy;
+    }
+
+    public void union(int left, int top, int right, int bottom) {
+        if ((left >= right) || (top >= bottom)) {
+            return;
+        }
+        if (isEmpty()) {
+            set(left, top, right, bottom);
+            return;
+        }
+        this.left = Math.min(this.left, left);
+        this.top = Math.min(this.top, top);
+        this.right = Math.max(this.right, right);
+        this.bottom = Math.max(this.bottom, bottom);
+    }
+
+}
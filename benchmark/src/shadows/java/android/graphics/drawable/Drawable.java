@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Rect;
+
+/**
+ * Benchmark shadow, without a callback invalidation is a no-op just like in the framework.
+ */
+public abstract class Drawable {
+
+    private final Rect bounds = new Rect();
+
+    public abstract void draw(Canvas canvas);
+
+    public abstract void setAlpha(int alpha);
+
+    public abstract void setColorFilter(ColorFilter colorFilter);
+
+    public abstract int getOpacity();
+
+    public void setBounds(int left, int top, int right, int bottom) {
+        if (bounds.left != left || bounds.top != top
+                || bounds.right != right || bounds.bottom != bottom) {
+            bounds.set(left, top, right, bottom);
+            onBoundsChange(bounds);
+        }
+    }
+
+    public final Rect getBounds() {
+        return bounds;
+    }
+
+    public Rect getDirtyBounds() {
+        return getBounds();
+    }
+
+    public final Callback getCallback() {
+        return null;
+    }
+
+    public void scheduleSelf(Runnable what, long when) {
+        // No-op
+    }
+
+    public int getIntrinsicWidth() {
+        return -1;
+    }
+
+    public int getIntrinsicHeight() {
+        return -1;
+    }
+
+    public void invalidateSelf() {
+        // No-op
+    }
+
+    protected void onBoundsChange(Rect bounds) {
+        // No-op
+    }
+
+    public interface Callback {
+        // Never set, see getCallback()
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * Benchmark shadow, keys are kept sorted like in the framework class.
+ */
+public class SparseArray<E> {
+
+    private int[] keys = new int[0];
+    private Object[] values = new Object[0];
+
+    @SuppressWarnings("unchecked")
+    public E get(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? (E) values[index] : null;
+    }
+
+    public void put(int key, E value) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            values[index] = value;
+            return;
+        }
+
+        index = ~index;
+        int[] newKeys = new int[keys.length + 1];
+        Object[] newValues = new Object[values.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(values, 0, newValues, 0, index);
+        newKeys[index] = key;
+        newValues[index] = value;
+        System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+        System.arraycopy(values, index, newValues, index + 1, values.length - index);
+        keys = newKeys;
+        values = newValues;
+    }
+
+    public void remove(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return;
+        }
+
+        int[] newKeys = new int[keys.length - 1];
+        Object[] newValues = new Object[values.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(values, 0, newValues, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+        System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+        keys = newKeys;
+        values = newValues;
+    }
+
+    public void clear() {
+        keys = new int[0];
+        values = new Object[0];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) values[index];
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.gradle
+
+import org.gradle.api.GradleException
+import org.gradle.api.Plugin
+import org.gradle.api.Project
+
+/**
+ * Adds a {@code compileSpecs} task to an Android module, which validates the module's
+ * {@code .spec} raw resources and packages them as precompiled assets. Apply it after the
+ * Android plugin.
+ *
+ * @author Ragunath Jawahar
+ */
+class SpecsPlugin implements Plugin<Project> {
+
+    @Override
+    void apply(Project project) {
+        def android = project.extensions.findByName('android')
+        if (android == null) {
+            throw new GradleException("Apply the Android plugin before 'com.mobsandgeeks.keylines.specs'.")
+        }
+
+        File specsOutputDir = new File(project.buildDir, 'generated/assets/keylines')
+        def compileSpecs = project.tasks.create('compileSpecs', CompileSpecsTask) {
+            description = 'Validates spec resources and precompiles them into assets.'
+            group = 'build'
+            source = project.files(android.sourceSets.main.res.srcDirs).asFileTree.matching {
+                include "raw*/*${CompileSpecsTask.SPEC_EXTENSION}"
+            }
+            outputDir = specsOutputDir
+        }
+
+        android.sourceSets.main.assets.srcDir specsOutputDir
+        project.tasks.getByName('preBuild').dependsOn compileSpecs
+    }
+
+}
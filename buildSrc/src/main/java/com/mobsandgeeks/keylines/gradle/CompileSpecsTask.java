@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.gradle;
+
+import com.mobsandgeeks.keylines.spec.PrecompiledSpecEncoder;
+
+import org.gradle.api.Action;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
+import org.gradle.api.tasks.incremental.InputFileDetails;
+import org.json.JSONException;
+import org.lucasr.dspec.SpecParseException;
+import org.lucasr.dspec.SpecParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates {@code .spec} raw resources and precompiles them into binary assets, which the SDK
+ * sends without reading or parsing JSON. Only specs that changed since the last build are
+ * processed again.
+ *
+ * <p>Assets can't have configuration qualifiers, so specs with qualified variants (in
+ * {@code raw-land} for instance) are validated but not precompiled, the SDK reads them as raw
+ * resources instead.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+public class CompileSpecsTask extends DefaultTask {
+
+    // Constants, the SDK looks up assets with the same names
+    static final String SPEC_EXTENSION = ".spec";
+    static final String ASSET_DIRECTORY = "keylines";
+    static final String ASSET_EXTENSION = ".kls";
+
+    private static final String RAW_DIRECTORY = "raw";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Attributes
+    private FileCollection source;
+    private File outputDir;
+
+    @InputFiles
+    @SkipWhenEmpty
+    public FileCollection getSource() {
+        return source;
+    }
+
+    public void setSource(FileCollection source) {
+        this.source = source;
+    }
+
+    @OutputDirectory
+    public File getOutputDir() {
+        return outputDir;
+    }
+
+    public void setOutputDir(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @TaskAction
+    public void compile(IncrementalTaskInputs inputs) {
+        final File assetDir = new File(outputDir, ASSET_DIRECTORY);
+        if (!inputs.isIncremental()) {
+            getProject().delete(assetDir);
+        }
+        if (!assetDir.isDirectory() && !assetDir.mkdirs()) {
+            throw new GradleException("Unable to create " + assetDir);
+        }
+
+        final Set<String> qualifiedNames = getQualifiedNames();
+        final List<String> errors = new ArrayList<>();
+
+        inputs.outOfDate(new Action<InputFileDetails>() {
+
+            @Override
+            public void execute(InputFileDetails details) {
+                File spec = details.getFile();
+                byte[] bytes = compile(spec, errors);
+                if (bytes != null && isPrecompilable(spec, qualifiedNames)) {
+                    write(getAsset(assetDir, spec), bytes);
+                }
+            }
+        });
+
+        inputs.removed(new Action<InputFileDetails>() {
+
+            @Override
+            public void execute(InputFileDetails details) {
+                File spec = details.getFile();
+                if (isUnqualified(spec)) {
+                    delete(getAsset(assetDir, spec));
+                }
+            }
+        });
+
+        // Qualified variants can be added or removed without touching the unqualified spec
+        for (File spec : source) {
+            if (!isUnqualified(spec)) {
+                continue;
+            }
+
+            File asset = getAsset(assetDir, spec);
+            if (qualifiedNames.contains(spec.getName())) {
+                delete(asset);
+            } else if (!asset.exists()) {
+                byte[] bytes = compile(spec, errors);
+                if (bytes != null) {
+                    write(asset, bytes);
+                }
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder("Invalid specs:");
+            for (String error : errors) {
+                message.append('\n').append(error);
+            }
+            throw new GradleException(message.toString());
+        }
+    }
+
+    /**
+     * @return The validated and encoded spec, {@code null} if it is invalid.
+     */
+    private byte[] compile(File spec, List<String> errors) {
+        String json;
+        try {
+            json = new String(Files.readAllBytes(spec.toPath()), UTF_8);
+        } catch (IOException e) {
+            errors.add(spec + ": " + e.getMessage());
+            return null;
+        }
+
+        List<SpecParseException> elementErrors = new ArrayList<>();
+        try {
+            SpecParser.fromJson(json, elementErrors);
+        } catch (SpecParseException e) {
+            errors.add(spec + ": " + e.getMessage());
+            return null;
+        }
+
+        if (!elementErrors.isEmpty()) {
+            for (SpecParseException e : elementErrors) {
+                errors.add(spec + ": " + e.getMessage());
+            }
+            return null;
+        }
+
+        try {
+            return PrecompiledSpecEncoder.encode(json);
+        } catch (JSONException e) {
+            errors.add(spec + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Set<String> getQualifiedNames() {
+        Set<String> qualifiedNames = new HashSet<>();
+        for (File spec : source) {
+            if (!isUnqualified(spec)) {
+                qualifiedNames.add(spec.getName());
+            }
+        }
+        return qualifiedNames;
+    }
+
+    private static boolean isPrecompilable(File spec, Set<String> qualifiedNames) {
+        return isUnqualified(spec) && !qualifiedNames.contains(spec.getName());
+    }
+
+    private static boolean isUnqualified(File spec) {
+        return RAW_DIRECTORY.equals(spec.getParentFile().getName());
+    }
+
+    private static File getAsset(File assetDir, File spec) {
+        String name = spec.getName();
+        if (name.endsWith(SPEC_EXTENSION)) {
+            name = name.substring(0, name.length() - SPEC_EXTENSION.length());
+        }
+        return new File(assetDir, name + ASSET_EXTENSION);
+    }
+
+    private static void write(File asset, byte[] bytes) {
+        try {
+            Files.write(asset.toPath(), bytes);
+        } catch (IOException e) {
+            throw new GradleException("Unable to write " + asset, e);
+        }
+    }
+
+    private static void delete(File asset) {
+        if (asset.exists() && !asset.delete()) {
+            throw new GradleException("Unable to delete " + asset);
+        }
+    }
+
+}
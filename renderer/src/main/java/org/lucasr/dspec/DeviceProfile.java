@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A screen to render specs for, its size in pixels and its density.
+ *
+ * @author Ragunath Jawahar
+ */
+final class DeviceProfile {
+
+    // Constants
+    private static final Pattern PROFILE =
+            Pattern.compile("(?:([\\w.-]+)=)?(\\d+)x(\\d+)@(\\d+(?:\\.\\d+)?)");
+
+    // Attributes
+    final String name;
+    final int width;
+    final int height;
+    final float density;
+
+    DeviceProfile(String name, int width, int height, float density) {
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.density = density;
+    }
+
+    /**
+     * Parses a profile such as {@code nexus5=1080x1920@3}, the name is optional.
+     *
+     * @throws IllegalArgumentException If the profile is malformed.
+     */
+    static DeviceProfile parse(String profile) {
+        Matcher matcher = PROFILE.matcher(profile);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Expected [name=]WIDTHxHEIGHT@DENSITY, was: "
+                    + profile);
+        }
+
+        int width = Integer.parseInt(matcher.group(2));
+        int height = Integer.parseInt(matcher.group(3));
+        float density = Float.parseFloat(matcher.group(4));
+        if (width == 0 || height == 0 || density == 0) {
+            throw new IllegalArgumentException("Empty profile: " + profile);
+        }
+
+        String name = matcher.group(1) != null ? matcher.group(1)
+                : String.format(Locale.US, "%dx%d@%s", width, height, matcher.group(4));
+        return new DeviceProfile(name, width, height, density);
+    }
+
+}
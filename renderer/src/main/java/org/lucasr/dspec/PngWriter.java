@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes ARGB pixels as an 8-bit RGBA PNG, without the AWT or ImageIO. Rows aren't filtered and
+ * are compressed for speed rather than size, spec previews are mostly flat color and compress
+ * well regardless.
+ *
+ * <p>Not thread-safe, every thread should use its own instance.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class PngWriter {
+
+    // Constants
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int BIT_DEPTH = 8;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int FILTER_NONE = 0;
+
+    // Attributes
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private final ChunkBuffer chunk = new ChunkBuffer();
+    private byte[] row = new byte[0];
+
+    /**
+     * Writes the pixels as a PNG.
+     *
+     * @param pixels Non-premultiplied ARGB pixels, row by row.
+     * @param width  Width of the image.
+     * @param height Height of the image.
+     * @param out    Receives the PNG, isn't closed.
+     */
+    void write(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        out.write(SIGNATURE);
+
+        // Header
+        chunk.reset();
+        DataOutputStream header = new DataOutputStream(chunk);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeByte(BIT_DEPTH);
+        header.writeByte(COLOR_TYPE_RGBA);
+        header.writeByte(0); // Deflate
+        header.writeByte(0); // Adaptive filtering
+        header.writeByte(0); // Not interlaced
+        writeChunk(out, "IHDR");
+
+        // Pixels
+        final int rowLength = 1 + width * 4;
+        if (row.length < rowLength) {
+            row = new byte[rowLength];
+        }
+        chunk.reset();
+        deflater.reset();
+        DeflaterOutputStream data = new DeflaterOutputStream(chunk, deflater, rowLength);
+        for (int y = 0; y < height; y++) {
+            row[0] = FILTER_NONE;
+            for (int x = 0, i = y * width, j = 1; x < width; x++, i++) {
+                int pixel = pixels[i];
+                row[j++] = (byte) (pixel >> 16);
+                row[j++] = (byte) (pixel >> 8);
+                row[j++] = (byte) pixel;
+                row[j++] = (byte) (pixel >>> 24);
+            }
+            data.write(row, 0, rowLength);
+        }
+        data.finish();
+        writeChunk(out, "IDAT");
+
+        chunk.reset();
+        writeChunk(out, "IEND");
+    }
+
+    /**
+     * Writes the buffered chunk data with its length, type and checksum.
+     */
+    private void writeChunk(OutputStream out, String type) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(chunk.buffer(), 0, chunk.size());
+
+        writeInt(out, chunk.size());
+        out.write(typeBytes);
+        out.write(chunk.buffer(), 0, chunk.size());
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Exposes its buffer, so that chunks are checksummed and written without a copy.
+     */
+    private static final class ChunkBuffer extends java.io.ByteArrayOutputStream {
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders spec previews as PNGs on a plain JVM, one for every spec on every device profile. Specs
+ * are read and previews rendered in parallel, each worker thread reuses its own pixel buffer and
+ * {@link PngWriter}.
+ *
+ * <p>Previews are named {@code <spec>-<device>.png}, the process exits with {@code 1} if any spec
+ * or preview failed.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+public final class SpecPreviews {
+
+    // Constants
+    private static final String USAGE = "Usage: renderer [--out DIR] [--threads N] [--no-grid] "
+            + "--device [NAME=]WIDTHxHEIGHT@DENSITY... SPEC...\n"
+            + "Specs are JSON, such as '.spec' raw resources, or binary '.kls' specs\n"
+            + "precompiled by the 'compileSpecs' task.";
+    private static final String BINARY_SPEC_EXTENSION = ".kls";
+    private static final String PREVIEW_EXTENSION = ".png";
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+
+    /**
+     * Pixels and a PNG writer per worker thread, previews of the same size reuse the buffer.
+     */
+    private static final ThreadLocal<Raster> RASTERS = ThreadLocal.withInitial(Raster::new);
+
+    public static void main(String[] args) throws InterruptedException {
+        File outDir = new File(".");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean showGrid = true;
+        List<DeviceProfile> devices = new ArrayList<>();
+        List<File> specFiles = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("--out".equals(arg)) {
+                    outDir = new File(value(args, ++i));
+                } else if ("--threads".equals(arg)) {
+                    threads = Integer.parseInt(value(args, ++i));
+                } else if ("--no-grid".equals(arg)) {
+                    showGrid = false;
+                } else if ("--device".equals(arg)) {
+                    devices.add(DeviceProfile.parse(value(args, ++i)));
+                } else {
+                    specFiles.add(new File(arg));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            exit(EXIT_USAGE, e.getMessage() + "\n" + USAGE);
+        }
+        if (devices.isEmpty() || specFiles.isEmpty() || threads < 1) {
+            exit(EXIT_USAGE, USAGE);
+        }
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            exit(EXIT_FAILURE, "Unable to create " + outDir);
+        }
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int rendered;
+        try {
+            rendered = render(specFiles, devices, outDir, showGrid, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int previews = specFiles.size() * devices.size();
+        System.out.printf("Rendered %d of %d previews in %d ms on %d threads.%n",
+                rendered, previews,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), threads);
+        if (rendered < previews) {
+            exit(EXIT_FAILURE, (previews - rendered) + " preview(s) failed.");
+        }
+    }
+
+    /**
+     * Renders every spec on every device.
+     *
+     * @return The number of previews rendered, failures are printed to {@code System.err}.
+     */
+    static int render(List<File> specFiles, List<DeviceProfile> devices, File outDir,
+                      boolean showGrid, ExecutorService executor) throws InterruptedException {
+        List<Future<Spec>> specs = new ArrayList<>(specFiles.size());
+        for (int i = 0, n = specFiles.size(); i < n; i++) {
+            File specFile = specFiles.get(i);
+            specs.add(executor.submit(() -> read(specFile)));
+        }
+
+        // Render each spec as soon as it's read
+        List<Future<File>> previews = new ArrayList<>(specFiles.size() * devices.size());
+        for (int i = 0, n = specFiles.size(); i < n; i++) {
+            File specFile = specFiles.get(i);
+            Spec spec;
+            try {
+                spec = specs.get(i).get();
+            } catch (ExecutionException e) {
+                System.err.println(specFile + ": " + e.getCause());
+                continue;
+            }
+
+            String specName = specFile.getName().replaceFirst("\\.[^.]*$", "");
+            for (int j = 0, m = devices.size(); j < m; j++) {
+                DeviceProfile device = devices.get(j);
+                File preview = new File(outDir, specName + "-" + device.name + PREVIEW_EXTENSION);
+                previews.add(executor.submit(() -> render(spec, device, showGrid, preview)));
+            }
+        }
+
+        int rendered = 0;
+        for (int i = 0, n = previews.size(); i < n; i++) {
+            try {
+                previews.get(i).get();
+                rendered++;
+            } catch (ExecutionException e) {
+                System.err.println(e.getCause().getMessage());
+            }
+        }
+        return rendered;
+    }
+
+    private static Spec read(File specFile) throws IOException, SpecParseException {
+        byte[] bytes = Files.readAllBytes(specFile.toPath());
+        if (specFile.getName().endsWith(BINARY_SPEC_EXTENSION)) {
+            return SpecCodec.decode(bytes);
+        }
+
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson(new String(bytes, StandardCharsets.UTF_8), errors);
+        for (int i = 0, n = errors.size(); i < n; i++) {
+            System.err.println(specFile + ": " + errors.get(i).getMessage());
+        }
+        return spec;
+    }
+
+    private static File render(Spec spec, DeviceProfile device, boolean showGrid, File preview)
+            throws IOException {
+        // Compiled without the spec's memo, it holds a single viewport and devices would evict it
+        CompiledSpec compiledSpec =
+                SpecCompiler.compile(spec, device.density, device.width, device.height);
+
+        Raster raster = RASTERS.get();
+        int[] pixels = raster.pixels(device.width * device.height);
+        SpecRasterizer.rasterize(compiledSpec, showGrid, pixels);
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(preview))) {
+            raster.pngWriter.write(pixels, device.width, device.height, out);
+        } catch (IOException e) {
+            throw new IOException("Unable to write " + preview + ": " + e.getMessage(), e);
+        }
+        return preview;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    private static void exit(int status, String message) {
+        System.err.println(message);
+        System.exit(status);
+    }
+
+    private SpecPreviews() {
+        throw new AssertionError("No instances.");
+    }
+
+    private static final class Raster {
+        final PngWriter pngWriter = new PngWriter();
+        private int[] pixels = new int[0];
+
+        int[] pixels(int size) {
+            if (pixels.length < size) {
+                pixels = new int[size];
+            }
+            return pixels;
+        }
+    }
+
+}
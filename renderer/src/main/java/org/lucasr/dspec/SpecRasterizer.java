@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.util.Arrays;
+
+import static org.lucasr.dspec.CompiledSpec.BATCH_BASELINE_GRID;
+import static org.lucasr.dspec.CompiledSpec.BATCH_KEYLINES;
+import static org.lucasr.dspec.CompiledSpec.BATCH_SPACINGS;
+import static org.lucasr.dspec.CompiledSpec.PRIMITIVE_SIZE;
+
+/**
+ * Draws a {@link CompiledSpec} into an ARGB pixel buffer, the way the app's {@code SpecLayer}
+ * draws it on a canvas. Spacings are filled rectangles, the baseline grid is drawn with hairlines
+ * and keylines with {@link Keyline#KEYLINE_STROKE_WIDTH_DIP} wide strokes, all anti-aliased by
+ * their exact pixel coverage and blended source-over. The output doesn't depend on the platform.
+ *
+ * <p>Keyline labels aren't drawn, they would need a font.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecRasterizer {
+
+    // Constants
+    private static final float HAIRLINE_WIDTH = 1f;
+
+    /**
+     * Rasterizes a compiled spec onto a transparent background.
+     *
+     * @param compiledSpec The compiled spec.
+     * @param showGrid     {@code false} to leave out the baseline grid.
+     * @param out          Receives the pixels, row by row, in non-premultiplied ARGB. Must hold
+     *                     at least {@code width * height} pixels of the compiled spec.
+     */
+    static void rasterize(CompiledSpec compiledSpec, boolean showGrid, int[] out) {
+        final int width = compiledSpec.width;
+        final int height = compiledSpec.height;
+        Arrays.fill(out, 0, width * height, 0);
+
+        fillRects(out, compiledSpec, BATCH_SPACINGS);
+        if (showGrid) {
+            strokeLines(out, compiledSpec, BATCH_BASELINE_GRID, HAIRLINE_WIDTH);
+        }
+        strokeLines(out, compiledSpec, BATCH_KEYLINES, Keyline.KEYLINE_STROKE_WIDTH_DIP);
+    }
+
+    private static void fillRects(int[] out, CompiledSpec compiledSpec, int batch) {
+        final float[] p = compiledSpec.primitives;
+        final int color = compiledSpec.batchColors[batch];
+        final int offset = compiledSpec.batchOffsets[batch];
+        for (int i = offset, n = offset + compiledSpec.batchLengths[batch];
+                i < n; i += PRIMITIVE_SIZE) {
+            fillRect(out, compiledSpec.width, compiledSpec.height,
+                    p[i], p[i + 1], p[i + 2], p[i + 3], color);
+        }
+    }
+
+    /**
+     * Strokes lines with butt caps. Spec lines are always horizontal or vertical, so every line is
+     * filled as the rectangle its stroke covers.
+     */
+    private static void strokeLines(int[] out, CompiledSpec compiledSpec, int batch,
+                                    float strokeWidth) {
+        final float[] p = compiledSpec.primitives;
+        final int color = compiledSpec.batchColors[batch];
+        final int offset = compiledSpec.batchOffsets[batch];
+        final float halfWidth = strokeWidth / 2;
+        for (int i = offset, n = offset + compiledSpec.batchLengths[batch];
+                i < n; i += PRIMITIVE_SIZE) {
+            float x0 = p[i], y0 = p[i + 1], x1 = p[i + 2], y1 = p[i + 3];
+            if (x0 == x1) {
+                fillRect(out, compiledSpec.width, compiledSpec.height,
+                        x0 - halfWidth, y0, x1 + halfWidth, y1, color);
+            } else {
+                fillRect(out, compiledSpec.width, compiledSpec.height,
+                        x0, y0 - halfWidth, x1, y1 + halfWidth, color);
+            }
+        }
+    }
+
+    private static void fillRect(int[] out, int width, int height,
+                                 float left, float top, float right, float bottom, int color) {
+        // Edges in any order, clipped to the buffer
+        float l = Math.max(0, Math.min(left, right));
+        float r = Math.min(width, Math.max(left, right));
+        float t = Math.max(0, Math.min(top, bottom));
+        float b = Math.min(height, Math.max(top, bottom));
+        if (l >= r || t >= b || (color >>> 24) == 0) {
+            return;
+        }
+
+        final int x0 = (int) l;
+        final int x1 = (int) Math.ceil(r);
+        final int y0 = (int) t;
+        final int y1 = (int) Math.ceil(b);
+        for (int y = y0; y < y1; y++) {
+            float coverageY = Math.min(b, y + 1) - Math.max(t, y);
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                float coverage = coverageY * (Math.min(r, x + 1) - Math.max(l, x));
+                out[row + x] = blend(out[row + x], color, coverage);
+            }
+        }
+    }
+
+    /**
+     * Composites a color over a pixel, both non-premultiplied.
+     */
+    private static int blend(int dst, int src, float coverage) {
+        float sa = (src >>> 24) / 255f * coverage;
+        if (sa <= 0) {
+            return dst;
+        }
+        float da = (dst >>> 24) / 255f;
+        float a = sa + da * (1 - sa);
+        float dw = da * (1 - sa);
+
+        int red = Math.round((((src >> 16) & 0xFF) * sa + ((dst >> 16) & 0xFF) * dw) / a);
+        int green = Math.round((((src >> 8) & 0xFF) * sa + ((dst >> 8) & 0xFF) * dw) / a);
+        int blue = Math.round(((src & 0xFF) * sa + (dst & 0xFF) * dw) / a);
+        return Math.round(a * 255) << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private SpecRasterizer() {
+        throw new AssertionError("No instances.");
+    }
+
+}
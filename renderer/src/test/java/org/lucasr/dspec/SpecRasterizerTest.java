@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecRasterizerTest {
+
+    private static final int RED = 0xFFFF0000;
+    private static final int GREEN = 0xFF00FF00;
+    private static final int BLUE = 0xFF0000FF;
+
+    // Half of a keyline's stroke covers each of the two pixels around it
+    private static final float KEYLINE_ALPHA = Keyline.KEYLINE_STROKE_WIDTH_DIP / 2 * 255;
+
+    @Test
+    public void rasterize_fillsSpacingsFromTheirEdge() {
+        Spec spec = Spec.builder()
+                .spacings(Collections.singletonList(new Spacing(2, 3, From.RIGHT)))
+                .spacingsColor(GREEN)
+                .build();
+
+        int[] pixels = rasterize(spec, 2, 40, 30, false);
+
+        // 40 - (2 + 3) * 2 = 30, filled up to 36
+        for (int y = 0; y < 30; y++) {
+            assertEquals(0, pixels[y * 40 + 29]);
+            for (int x = 30; x < 36; x++) {
+                assertEquals(GREEN, pixels[y * 40 + x]);
+            }
+            assertEquals(0, pixels[y * 40 + 36]);
+        }
+    }
+
+    @Test
+    public void rasterize_fillsSpacingsByDensity() {
+        Spec spec = Spec.builder()
+                .spacings(Collections.singletonList(new Spacing(2, 4, From.TOP)))
+                .spacingsColor(GREEN)
+                .build();
+
+        int[] pixels = rasterize(spec, 1.5f, 20, 20, false);
+
+        // Rows 3 to 9, exactly
+        for (int x = 0; x < 20; x++) {
+            assertEquals(0, pixels[2 * 20 + x]);
+            for (int y = 3; y < 9; y++) {
+                assertEquals(GREEN, pixels[y * 20 + x]);
+            }
+            assertEquals(0, pixels[9 * 20 + x]);
+        }
+    }
+
+    @Test
+    public void rasterize_strokesKeylinesFromTheirEdge() {
+        Spec spec = Spec.builder()
+                .keylines(Collections.singletonList(new Keyline(10, From.LEFT, null)))
+                .keylinesColor(BLUE)
+                .build();
+
+        int[] pixels = rasterize(spec, 2, 40, 30, false);
+
+        // Centered on x = 20, across the whole height
+        for (int y = 0; y < 30; y++) {
+            assertEquals(0, pixels[y * 40 + 18]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[y * 40 + 19]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[y * 40 + 20]);
+            assertEquals(0, pixels[y * 40 + 21]);
+        }
+    }
+
+    @Test
+    public void rasterize_strokesKeylinesFromTheFarEdgeAndCenters() {
+        Spec spec = Spec.builder()
+                .keylines(Arrays.asList(
+                        new Keyline(4, From.BOTTOM, null),
+                        new Keyline(-4, From.VERTICAL_CENTER, null)))
+                .keylinesColor(BLUE)
+                .build();
+
+        int[] pixels = rasterize(spec, 2, 40, 30, false);
+
+        // 30 - 4 * 2 = 22 and 30 / 2 - 4 * 2 = 7, across the whole width
+        for (int x = 0; x < 40; x++) {
+            assertEquals(0, pixels[5 * 40 + x]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[6 * 40 + x]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[7 * 40 + x]);
+            assertEquals(0, pixels[8 * 40 + x]);
+
+            assertEquals(0, pixels[20 * 40 + x]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[21 * 40 + x]);
+            assertPixel(KEYLINE_ALPHA, BLUE, pixels[22 * 40 + x]);
+            assertEquals(0, pixels[23 * 40 + x]);
+        }
+    }
+
+    @Test
+    public void rasterize_scalesKeylinesByDensity() {
+        Spec spec = Spec.builder()
+                .keylines(Collections.singletonList(new Keyline(8, From.TOP, null)))
+                .keylinesColor(BLUE)
+                .build();
+
+        int[] mdpi = rasterize(spec, 1, 10, 40, false);
+        int[] xxhdpi = rasterize(spec, 3, 10, 40, false);
+
+        assertPixel(KEYLINE_ALPHA, BLUE, mdpi[7 * 10]);
+        assertPixel(KEYLINE_ALPHA, BLUE, mdpi[8 * 10]);
+        assertEquals(0, mdpi[23 * 10]);
+        assertEquals(0, xxhdpi[8 * 10]);
+        assertPixel(KEYLINE_ALPHA, BLUE, xxhdpi[23 * 10]);
+        assertPixel(KEYLINE_ALPHA, BLUE, xxhdpi[24 * 10]);
+    }
+
+    @Test
+    public void rasterize_strokesTheBaselineGridByDensity() {
+        Spec spec = Spec.builder()
+                .baselineGrid(new Grid(4))
+                .baselineGridColor(RED)
+                .build();
+
+        int[] pixels = rasterize(spec, 2, 20, 20, true);
+
+        // Hairlines on x and y = 8 and 16, checked away from their crossings
+        assertEquals(0, pixels[2 * 20 + 6]);
+        assertPixel(127.5f, RED, pixels[2 * 20 + 7]);
+        assertPixel(127.5f, RED, pixels[2 * 20 + 8]);
+        assertEquals(0, pixels[2 * 20 + 9]);
+        assertPixel(127.5f, RED, pixels[2 * 20 + 15]);
+        assertPixel(127.5f, RED, pixels[2 * 20 + 16]);
+        assertEquals(0, pixels[2 * 20 + 17]);
+
+        assertEquals(0, pixels[6 * 20 + 2]);
+        assertPixel(127.5f, RED, pixels[7 * 20 + 2]);
+        assertPixel(127.5f, RED, pixels[8 * 20 + 2]);
+        assertEquals(0, pixels[9 * 20 + 2]);
+    }
+
+    @Test
+    public void rasterize_leavesOutTheBaselineGrid() {
+        Spec spec = Spec.builder()
+                .baselineGrid(new Grid(4))
+                .baselineGridColor(RED)
+                .build();
+
+        int[] pixels = rasterize(spec, 2, 20, 20, false);
+
+        for (int pixel : pixels) {
+            assertEquals(0, pixel);
+        }
+    }
+
+    @Test
+    public void rasterize_blendsKeylinesOverSpacings() {
+        Spec spec = Spec.builder()
+                .keylines(Collections.singletonList(new Keyline(10, From.LEFT, null)))
+                .keylinesColor(RED)
+                .spacings(Collections.singletonList(new Spacing(0, 20, From.LEFT)))
+                .spacingsColor(GREEN)
+                .build();
+
+        int[] pixels = rasterize(spec, 1, 20, 10, false);
+
+        int pixel = pixels[10];
+        assertEquals(0xFF, pixel >>> 24);
+        assertEquals(KEYLINE_ALPHA, (pixel >> 16) & 0xFF, 1);
+        assertEquals(255 - KEYLINE_ALPHA, (pixel >> 8) & 0xFF, 1);
+        assertEquals(GREEN, pixels[12]);
+    }
+
+    private static int[] rasterize(Spec spec, float density, int width, int height,
+                                   boolean showGrid) {
+        int[] pixels = new int[width * height];
+        SpecRasterizer.rasterize(
+                SpecCompiler.compile(spec, density, width, height), showGrid, pixels);
+        return pixels;
+    }
+
+    private static void assertPixel(float alpha, int color, int pixel) {
+        assertEquals(alpha, pixel >>> 24, 1);
+        assertEquals(color & 0xFFFFFF, pixel & 0xFFFFFF);
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates an index of the classes annotated with {@code @DesignSpec}, keyed by their binary
+ * names, so that the SDK finds a host's specs without reflection. Enable it in the application
+ * module with {@code debugAnnotationProcessor project(':sdk-compiler')}.
+ *
+ * <p>The index is generated once per compilation, in the SDK's package, so only the application
+ * module should run the processor. An empty index is generated on the final round if no class is
+ * annotated, the SDK then finds nothing to show without falling back to reflection.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+public class DesignSpecProcessor extends AbstractProcessor {
+
+    // Constants
+    static final String SDK_PACKAGE = "com.mobsandgeeks.keylines.sdk";
+    static final String DESIGN_SPEC = SDK_PACKAGE + ".DesignSpec";
+    static final String INDEX_CLASS_NAME = "GeneratedDesignSpecIndex";
+
+    private static final String[] HOST_TYPES = {
+            "android.app.Activity",
+            "android.app.Fragment",
+            "android.support.v4.app.Fragment"
+    };
+
+    // Attributes
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private boolean indexWritten;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // Every round, javac only runs the final round for processors that ran before. The
+        // processor never claims annotations, so other processors still see them.
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement designSpec = elements.getTypeElement(DESIGN_SPEC);
+        if (designSpec == null) {
+            return false; // Not an SDK build
+        }
+
+        if (roundEnv.processingOver()) {
+            if (!indexWritten) {
+                writeIndex(new HashMap<String, int[]>());
+                indexWritten = true;
+            }
+            return false;
+        }
+
+        Set<? extends Element> annotatedElements = roundEnv.getElementsAnnotatedWith(designSpec);
+        if (annotatedElements.isEmpty()) {
+            return false;
+        }
+
+        if (indexWritten) {
+            for (Element element : annotatedElements) {
+                error(element, "@DesignSpec classes generated by other annotation processors "
+                        + "aren't supported.");
+            }
+            return false;
+        }
+
+        // Sorted by name, so that the generated source is stable between builds
+        Map<String, int[]> index = new LinkedHashMap<String, int[]>();
+        for (Element element : sortedByName(annotatedElements)) {
+            if (!isHost(element)) {
+                error(element, "@DesignSpec can only be used on Activity and Fragment classes.");
+                continue;
+            }
+
+            TypeElement hostElement = (TypeElement) element;
+            int[] specResourceIds = getSpecResourceIds(hostElement, designSpec);
+            if (specResourceIds != null) {
+                index.put(elements.getBinaryName(hostElement).toString(), specResourceIds);
+            }
+        }
+
+        writeIndex(index);
+        indexWritten = true;
+        return false;
+    }
+
+    private boolean isHost(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            return false;
+        }
+
+        TypeMirror type = element.asType();
+        for (String hostType : HOST_TYPES) {
+            TypeElement hostElement = elements.getTypeElement(hostType);
+            if (hostElement != null
+                    && types.isSubtype(types.erasure(type), types.erasure(hostElement.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] getSpecResourceIds(TypeElement hostElement, TypeElement designSpec) {
+        for (AnnotationMirror mirror : hostElement.getAnnotationMirrors()) {
+            if (!types.isSameType(mirror.getAnnotationType(), designSpec.asType())) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                List<? extends AnnotationValue> values =
+                        (List<? extends AnnotationValue>) entry.getValue().getValue();
+                int[] specResourceIds = new int[values.size()];
+                for (int i = 0, n = values.size(); i < n; i++) {
+                    Object value = values.get(i).getValue();
+                    if (!(value instanceof Integer)) {
+                        error(hostElement, "@DesignSpec values must be constant resource IDs.");
+                        return null;
+                    }
+                    specResourceIds[i] = (Integer) value;
+                }
+                return specResourceIds;
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex(Map<String, int[]> index) {
+        StringBuilder source = new StringBuilder()
+                .append("// Generated by ").append(getClass().getName()).append(". Do not edit.\n")
+                .append("package ").append(SDK_PACKAGE).append(";\n\n")
+                .append("import java.util.HashMap;\n")
+                .append("import java.util.Map;\n\n")
+                .append("final class ").append(INDEX_CLASS_NAME)
+                .append(" implements DesignSpecIndex {\n\n")
+                .append("    private final Map<String, int[]> specs = new HashMap<String, int[]>(")
+                .append(Math.max(index.size() * 2, 2)).append(");\n\n")
+                .append("    ").append(INDEX_CLASS_NAME).append("() {\n");
+
+        for (Map.Entry<String, int[]> entry : index.entrySet()) {
+            source.append("        specs.put(\"").append(entry.getKey()).append("\", new int[] {");
+            int[] specResourceIds = entry.getValue();
+            for (int i = 0; i < specResourceIds.length; i++) {
+                source.append(i == 0 ? " " : ", ")
+                        .append(String.format("0x%08x", specResourceIds[i]));
+            }
+            source.append(" });\n");
+        }
+
+        source.append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public int[] get(String hostClassName) {\n")
+                .append("        return specs.get(hostClassName);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String[] hostClassNames() {\n")
+                .append("        return specs.keySet().toArray(new String[specs.size()]);\n")
+                .append("    }\n\n")
+                .append("}\n");
+
+        Writer writer = null;
+        try {
+            JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(SDK_PACKAGE + "." + INDEX_CLASS_NAME);
+            writer = file.openWriter();
+            writer.write(source.toString());
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + INDEX_CLASS_NAME + ": " + e.getMessage());
+        } finally {
+            try { if (writer != null) { writer.close(); } } catch (IOException ignored) {}
+        }
+    }
+
+    private List<Element> sortedByName(Set<? extends Element> elements) {
+        List<Element> sorted = new ArrayList<Element>(elements);
+        Collections.sort(sorted, new Comparator<Element>() {
+
+            @Override
+            public int compare(Element a, Element b) {
+                return a.toString().compareTo(b.toString());
+            }
+        });
+        return sorted;
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+}
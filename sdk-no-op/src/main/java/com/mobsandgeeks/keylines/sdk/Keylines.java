@@ -52,6 +52,15 @@ public class Keylines {
         // No-op
     }
 
+    /**
+     * No-op implementation.
+     *
+     * @param enabled Ignored.
+     */
+    public void setLayoutChecking(boolean enabled) {
+        // No-op
+    }
+
     private Keylines() {
         // No-op, private constructor
     }
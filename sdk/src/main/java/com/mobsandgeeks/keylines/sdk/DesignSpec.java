@@ -24,6 +24,10 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Specs an activity or a fragment. Read at compile time by the {@code sdk-compiler} annotation
+ * processor, which indexes the annotated classes. Retained at runtime for apps that don't run
+ * the processor.
+ *
  * @author Ragunath Jawahar
  */
 @Target(ElementType.TYPE)
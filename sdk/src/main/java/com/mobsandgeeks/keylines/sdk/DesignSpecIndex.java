@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.RawRes;
+
+/**
+ * Spec resources of {@link DesignSpec} annotated classes, by binary class name. The
+ * implementation, {@code GeneratedDesignSpecIndex}, is generated into the host application by the
+ * {@code sdk-compiler} annotation processor. {@link ReflectiveDesignSpecIndex} stands in for it
+ * when the processor doesn't run, and for the classes it doesn't index, see
+ * {@link FallbackDesignSpecIndex}.
+ *
+ * @author Ragunath Jawahar
+ */
+interface DesignSpecIndex {
+
+    /**
+     * @param hostClassName The binary name of an activity or a fragment.
+     * @return The spec resources of the class, {@code null} if it isn't annotated.
+     */
+    @Nullable @RawRes int[] get(String hostClassName);
+
+    /**
+     * @return The binary names of all annotated classes.
+     */
+    String[] hostClassNames();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Looks classes up in the generated index first and reads their annotations at runtime when the
+ * index has no entry for them. The processor only indexes the module it runs in, annotated
+ * classes of libraries and other modules without it are found through reflection.
+ *
+ * @author Ragunath Jawahar
+ */
+final class FallbackDesignSpecIndex implements DesignSpecIndex {
+
+    // Attributes
+    private final DesignSpecIndex index;
+    private final DesignSpecIndex fallback;
+
+    FallbackDesignSpecIndex(DesignSpecIndex index, DesignSpecIndex fallback) {
+        this.index = index;
+        this.fallback = fallback;
+    }
+
+    @Nullable
+    @Override
+    public int[] get(String hostClassName) {
+        int[] specResourceIds = index.get(hostClassName);
+        return specResourceIds != null ? specResourceIds : fallback.get(hostClassName);
+    }
+
+    /**
+     * @return The indexed classes only, those found through reflection aren't warmed up.
+     */
+    @Override
+    public String[] hostClassNames() {
+        return index.hostClassNames();
+    }
+
+}
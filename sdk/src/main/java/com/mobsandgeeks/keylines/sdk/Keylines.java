@@ -20,24 +20,55 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Application;
 import android.app.Fragment;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.AssetManager;
+import android.content.res.Configuration;
 import android.content.res.Resources;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.MessageQueue;
+import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RawRes;
 import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+
+import com.mobsandgeeks.keylines.spec.MergedSpec;
+import com.mobsandgeeks.keylines.spec.SpecPatch;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.mobsandgeeks.keylines.sdk.Shared.MSG_HIGHLIGHT;
+import static com.mobsandgeeks.keylines.sdk.Shared.MSG_REQUEST_SPEC;
+import static com.mobsandgeeks.keylines.sdk.Shared.MSG_SHOW;
+import static com.mobsandgeeks.keylines.sdk.Shared.MSG_STOP;
 import static com.mobsandgeeks.keylines.sdk.Shared.NAMESPACE_ACTION;
 import static com.mobsandgeeks.keylines.sdk.Shared.NAMESPACE_EXTRA;
 
@@ -48,6 +79,17 @@ public class Keylines {
 
     // Constants
     private static final String TAG = Keylines.class.getSimpleName();
+    private static final int MSG_SHOW_SPEC = 1;
+    private static final int MSG_WARM_CACHE = 2;
+    private static final int MSG_CHECK_SENT_SPEC = 3;
+    private static final int MSG_STOP_SPEC = 4;
+    private static final int MSG_CLEAR_CACHE = 5;
+    private static final int SPEC_CACHE_SIZE_BYTES = 256 * 1024;
+    private static final int SHARED_SPEC_MIN_SIZE_BYTES = 64 * 1024;
+    private static final String ASSET_DIRECTORY = "keylines/";
+    private static final String ASSET_EXTENSION = ".kls";
+    private static final String INDEX_CLASS_NAME =
+            Keylines.class.getPackage().getName() + ".GeneratedDesignSpecIndex";
 
     // Actions
     private static final String ACTION_SHOW = NAMESPACE_ACTION + ".SHOW";
@@ -55,9 +97,76 @@ public class Keylines {
 
     // Extras
     private static final String EXTRA_SPEC = NAMESPACE_EXTRA + ".SPEC";
+    private static final String EXTRA_SPEC_BYTES = NAMESPACE_EXTRA + ".SPEC_BYTES";
+    private static final String EXTRA_SPEC_HASH = NAMESPACE_EXTRA + ".SPEC_HASH";
+    private static final String EXTRA_SPEC_DESCRIPTOR = NAMESPACE_EXTRA + ".SPEC_DESCRIPTOR";
+    private static final String EXTRA_SPEC_BASE_HASH = NAMESPACE_EXTRA + ".SPEC_BASE_HASH";
+    private static final String EXTRA_SPEC_PATCH_REMOVED = NAMESPACE_EXTRA + ".SPEC_PATCH_REMOVED";
+    private static final String EXTRA_SPEC_PATCH_ADDED = NAMESPACE_EXTRA + ".SPEC_PATCH_ADDED";
+    private static final String EXTRA_VIOLATIONS = NAMESPACE_EXTRA + ".VIOLATIONS";
 
     // Attributes
     private Resources resources;
+    private AssetManager assets;
+    private File cacheDir;
+
+    /**
+     * The Keylines app's {@code StethoscopeService}, which delivers commands straight to the
+     * overlay. Broadcasts are used while it isn't connected.
+     */
+    private volatile Messenger serviceMessenger;
+    private DesignSpecIndex designSpecIndex;
+
+    /**
+     * Hashes of the specs sent to the connected app, these are sent as their hash alone. The app
+     * replies with {@link Shared#MSG_REQUEST_SPEC} to {@link #replyMessenger} if it no longer
+     * holds one, the latest sent spec is then sent in full. A new spec is sent as a patch of the
+     * previous one, if that is known to the app and the patch is small.
+     */
+    private final Set<Long> sentSpecHashes = Collections.synchronizedSet(new HashSet<Long>());
+    private Messenger replyMessenger;
+    private Context sentContext;
+    private SpecPayload sentPayload;
+
+    /**
+     * Reads, merges and sends specs on a single background thread. Only the latest request
+     * matters, older ones are dropped before they are read and discarded if they are superseded
+     * while being read.
+     */
+    private Handler workerHandler;
+    private final AtomicInteger latestRequest = new AtomicInteger();
+
+    /**
+     * Merged specs by host class name, so that returning to an activity doesn't read its resources
+     * again. Raw resources can have configuration qualifiers, so the cache is cleared when the
+     * configuration changes.
+     */
+    private final LruCache<String, SpecPayload> specCache =
+            new LruCache<String, SpecPayload>(SPEC_CACHE_SIZE_BYTES) {
+
+                @Override
+                protected int sizeOf(String hostClassName, SpecPayload payload) {
+                    return payload.size();
+                }
+            };
+
+    /**
+     * Checks the started activity's layout against the latest sent spec, when enabled. Main
+     * thread only, except for the flag, which the worker reads when it sends a spec.
+     */
+    private Handler mainHandler;
+    private volatile boolean layoutChecking = false;
+    private WeakReference<Activity> startedActivity = new WeakReference<Activity>(null);
+    private LayoutChecker layoutChecker;
+    private MergedSpec checkedSpec;
+
+    private final LayoutChecker.Listener violationListener = new LayoutChecker.Listener() {
+
+        @Override
+        public void onViolations(float[] bounds) {
+            highlight(bounds);
+        }
+    };
 
     private static class SingletonHolder {
         static final Keylines INSTANCE = new Keylines();
@@ -94,12 +203,99 @@ public class Keylines {
         spec(supportFragment.getActivity(), supportFragment);
     }
 
+    /**
+     * Checks that the views of the started activity sit on the keylines of the shown spec, and
+     * that their text baselines sit on its baseline grid. Views that are a few dips off are
+     * highlighted in the Keylines app. Checks run after layout, only for the views that were laid
+     * out again, and take at most a few milliseconds per frame.
+     *
+     * <p>Off by default. Must be called from the main thread.</p>
+     *
+     * @param enabled {@code true} to check layouts.
+     */
+    @SuppressWarnings("unused")
+    public void setLayoutChecking(boolean enabled) {
+        if (this.resources == null) {
+            String message = "Keylines must be initialized using the 'init(Application)' method.";
+            throw new IllegalStateException(message);
+        }
+
+        if (enabled == layoutChecking) {
+            return;
+        }
+        layoutChecking = enabled;
+
+        if (enabled) {
+            // The shown spec was sent while checking was off, the worker hands it over
+            workerHandler.sendEmptyMessage(MSG_CHECK_SENT_SPEC);
+            Activity activity = startedActivity.get();
+            if (activity != null) {
+                checkLayout(activity);
+            }
+        } else {
+            stopCheckingLayout();
+            checkedSpec = null;
+        }
+    }
+
     void init(Application application) {
         if (this.resources != null) {
             throw new IllegalStateException("Keylines has to be initialized only once.");
         }
         this.resources = application.getResources();
+        this.assets = application.getAssets();
+        this.cacheDir = application.getCacheDir();
+        this.designSpecIndex = loadDesignSpecIndex(application);
+
+        HandlerThread workerThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        workerThread.start();
+        this.workerHandler = new Handler(workerThread.getLooper(), new Handler.Callback() {
+
+            @Override
+            public boolean handleMessage(Message message) {
+                switch (message.what) {
+                    case MSG_SHOW_SPEC:
+                        sendSpec(message.arg1, (SpecRequest) message.obj);
+                        return true;
+
+                    case MSG_WARM_CACHE:
+                        warmCache(message.arg1, (String[]) message.obj);
+                        return true;
+
+                    case MSG_STOP_SPEC:
+                        stopSpec((Context) message.obj);
+                        return true;
+
+                    case MSG_CLEAR_CACHE:
+                        specCache.evictAll();
+                        return true;
+
+                    case MSG_CHECK_SENT_SPEC:
+                        if (sentPayload != null) {
+                            setCheckedSpec(sentPayload);
+                        }
+                        return true;
+
+                    case MSG_REQUEST_SPEC:
+                        resendSpec(message.getData().getLong(EXTRA_SPEC_HASH));
+                        return true;
+
+                    default:
+                        return false;
+                }
+            }
+        });
+        this.replyMessenger = new Messenger(workerHandler);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+
         spyOnActivities(application);
+        clearCacheOnConfigurationChange(application);
+        warmCacheWhenIdle();
+    }
+
+    void setServiceMessenger(@Nullable Messenger serviceMessenger) {
+        this.serviceMessenger = serviceMessenger;
+        sentSpecHashes.clear(); // A new connection could be to a new app process
     }
 
     private Keylines() {
@@ -160,60 +356,303 @@ public class Keylines {
                 Class<? extends Activity> activityClass = activity.getClass();
                 showSpec(activity, activityClass);
 
+                // Check layout
+                startedActivity = new WeakReference<Activity>(activity);
+                if (layoutChecking) {
+                    checkLayout(activity);
+                }
+
                 // Increment counter
                 activityCounter.incrementAndGet();
             }
 
             @Override
             public void onActivityStopped(Activity activity) {
+                if (layoutChecker != null
+                        && layoutChecker.isFor(activity.getWindow().getDecorView())) {
+                    stopCheckingLayout();
+                }
+
                 int liveActivities = activityCounter.decrementAndGet();
 
                 if (liveActivities == 0) {
-                    application.sendBroadcast(new Intent(ACTION_STOP));
+                    // Stopped from the worker, after a spec it may be sending right now
+                    cancelPendingSpecs();
+                    workerHandler.obtainMessage(MSG_STOP_SPEC, application).sendToTarget();
                 }
             }
         });
     }
 
-    private void showSpec(final Context context, final Class<?> hostClass) {
-        final DesignSpec designSpec = hostClass.getAnnotation(DesignSpec.class);
-        if (designSpec == null) {
-            String message = String.format("%s is not annotated with @%s",
-                    hostClass.getName(), DesignSpec.class.getSimpleName());
-            Log.i(TAG, message);
+    private void showSpec(Context context, Class<?> hostClass) {
+        String hostClassName = hostClass.getName();
+        int[] specResourceIds = designSpecIndex.get(hostClassName);
+        if (specResourceIds == null) {
+            return; // Not annotated
+        }
+
+        // IO on the worker thread, the latest request supersedes the pending one. The request
+        // holds on to the application context, so that queued requests don't leak activities.
+        cancelPendingSpecs();
+        SpecRequest request = new SpecRequest(
+                context.getApplicationContext(), hostClassName, specResourceIds);
+        workerHandler.obtainMessage(MSG_SHOW_SPEC, latestRequest.get(), 0, request)
+                .sendToTarget();
+    }
+
+    private void cancelPendingSpecs() {
+        latestRequest.incrementAndGet();
+        workerHandler.removeMessages(MSG_SHOW_SPEC);
+    }
+
+    private void sendSpec(int requestId, SpecRequest request) {
+        if (requestId != latestRequest.get()) {
+            return; // Superseded
+        }
+
+        SpecPayload payload = getSpecPayload(request.hostClassName, request.specResourceIds);
+        if (requestId == latestRequest.get()) {
+            send(request.context, payload, true);
+            if (layoutChecking) {
+                setCheckedSpec(payload);
+            }
+        }
+    }
+
+    private void stopSpec(Context context) {
+        if (!sendToService(Message.obtain(null, MSG_STOP))) {
+            context.sendBroadcast(new Intent(ACTION_STOP));
+        }
+    }
+
+    private void checkLayout(Activity activity) {
+        View decorView = activity.getWindow().getDecorView();
+        if (layoutChecker != null && layoutChecker.isFor(decorView)) {
             return;
         }
 
-        // IO on a different thread
-        new Thread(new Runnable() {
+        stopCheckingLayout();
+        layoutChecker = new LayoutChecker(decorView, mainHandler, violationListener);
+        layoutChecker.attach();
+        layoutChecker.setSpec(checkedSpec);
+    }
+
+    private void stopCheckingLayout() {
+        if (layoutChecker != null) {
+            layoutChecker.detach();
+            layoutChecker = null;
+        }
+    }
+
+    /**
+     * Hands the sent spec over to the layout checker, on the main thread. Specs sent as JSON are
+     * malformed and aren't checked against.
+     */
+    private void setCheckedSpec(SpecPayload payload) {
+        MergedSpec spec = null;
+        if (payload.bytes != null) {
+            spec = new MergedSpec();
+            try {
+                spec.merge(payload.bytes);
+            } catch (IllegalArgumentException e) {
+                spec = null; // Sent anyway, the app reports it
+            }
+        }
+
+        final MergedSpec checkedSpec = spec;
+        mainHandler.post(new Runnable() {
 
             @Override
             public void run() {
-                String jsonSpec = getMergedJsonSpec(hostClass, designSpec.value()); // TODO 26/10/16 Validate spec
-                if (jsonSpec != null) {
-                    send(context, jsonSpec);
-                } // TODO 28/10/16 Log a warning
+                Keylines.this.checkedSpec = checkedSpec;
+                if (layoutChecker != null) {
+                    layoutChecker.setSpec(checkedSpec);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends the bounds of the views that are off the spec to the Keylines app. Highlights need the
+     * service connection, they aren't broadcast.
+     */
+    private void highlight(float[] bounds) {
+        Message message = Message.obtain(null, MSG_HIGHLIGHT);
+        Bundle extras = new Bundle();
+        extras.putFloatArray(EXTRA_VIOLATIONS, bounds);
+        message.setData(extras);
+        if (!sendToService(message) && bounds.length > 0) {
+            Log.w(TAG, (bounds.length / 4) + " view(s) off the spec, "
+                    + "connect to the Keylines app to highlight them.");
+        }
+    }
+
+    private SpecPayload getSpecPayload(String hostClassName, @RawRes int[] specResourceIds) {
+        SpecPayload payload = specCache.get(hostClassName);
+        if (payload == null) {
+            MergedSpec precompiledSpec = getPrecompiledSpec(specResourceIds);
+            if (precompiledSpec != null) {
+                payload = SpecPayload.of(precompiledSpec.encode());
+            } else {
+                payload = getMergedSpec(hostClassName, specResourceIds);
             }
-        }).start();
+            specCache.put(hostClassName, payload);
+        }
+        return payload;
     }
 
-    private String getMergedJsonSpec(Class<?> hostClass, @RawRes int[] specResourceIds) {
+    /**
+     * Reads and merges the specs precompiled by the {@code compileSpecs} build task.
+     *
+     * @return The merged spec, {@code null} if any of the specs isn't precompiled.
+     */
+    @Nullable
+    private MergedSpec getPrecompiledSpec(@RawRes int[] specResourceIds) {
+        MergedSpec mergedSpec = new MergedSpec();
+        ByteArrayOutputStream spec = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+
+        // noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < specResourceIds.length; i++) {
+            InputStream in = null;
+            try {
+                String name = resources.getResourceEntryName(specResourceIds[i]);
+                in = assets.open(ASSET_DIRECTORY + name + ASSET_EXTENSION);
+
+                int read;
+                spec.reset();
+                while ((read = in.read(buffer)) != -1) {
+                    spec.write(buffer, 0, read);
+                }
+                mergedSpec.merge(spec.toByteArray());
+            } catch (Resources.NotFoundException e) {
+                return null;
+            } catch (FileNotFoundException e) {
+                return null; // Not precompiled, or has qualified variants
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to read precompiled spec.", e);
+                return null;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Malformed precompiled spec, rebuild the app.", e);
+                return null;
+            } finally {
+                try { if (in != null) { in.close(); } } catch (IOException ignored) {}
+            }
+        }
+
+        return mergedSpec;
+    }
+
+    /**
+     * Prepares the specs of all annotated classes once the main thread goes idle after start-up.
+     * One class is prepared per message, so that specs requested in the meantime don't wait for
+     * the whole cache to warm up.
+     */
+    private void warmCacheWhenIdle() {
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+
+            @Override
+            public boolean queueIdle() {
+                workerHandler.obtainMessage(MSG_WARM_CACHE, 0, 0,
+                        designSpecIndex.hostClassNames()).sendToTarget();
+                return false; // Once
+            }
+        });
+    }
+
+    private void warmCache(int index, String[] hostClassNames) {
+        if (index >= hostClassNames.length) {
+            return;
+        }
+
+        String hostClassName = hostClassNames[index];
+        getSpecPayload(hostClassName, designSpecIndex.get(hostClassName));
+
+        workerHandler.obtainMessage(MSG_WARM_CACHE, index + 1, 0, hostClassNames)
+                .sendToTarget();
+    }
+
+    /**
+     * Loads the index generated by the {@code sdk-compiler} annotation processor, specs are then
+     * found by class name. Classes missing from it, like those of library modules that don't run
+     * the processor, and all classes without the processor, have their {@link DesignSpec}
+     * annotations read at runtime instead.
+     */
+    private static DesignSpecIndex loadDesignSpecIndex(Context context) {
+        try {
+            DesignSpecIndex index = (DesignSpecIndex) Class.forName(INDEX_CLASS_NAME).newInstance();
+            return new FallbackDesignSpecIndex(index, new ReflectiveDesignSpecIndex(context));
+        } catch (ClassNotFoundException e) {
+            Log.i(TAG, "No @DesignSpec index found, reading annotations at runtime. Add "
+                    + "'debugAnnotationProcessor' for the Keylines SDK compiler to your build.");
+        } catch (InstantiationException e) {
+            Log.e(TAG, "Unable to load the @DesignSpec index.", e);
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Unable to load the @DesignSpec index.", e);
+        }
+
+        return new ReflectiveDesignSpecIndex(context);
+    }
+
+    /**
+     * Clears the cache on the worker, after any merge in progress. A merge that read the resources
+     * of the previous configuration would otherwise put its spec back once the cache was cleared.
+     */
+    private void clearCacheOnConfigurationChange(Application application) {
+        application.registerComponentCallbacks(new ComponentCallbacks2() {
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                workerHandler.sendEmptyMessage(MSG_CLEAR_CACHE);
+            }
+
+            @Override
+            public void onLowMemory() {
+                workerHandler.sendEmptyMessage(MSG_CLEAR_CACHE);
+            }
+
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    workerHandler.sendEmptyMessage(MSG_CLEAR_CACHE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Merges the spec resources into a {@link MergedSpec}. If one of them is malformed, the merged
+     * JSON is sent instead, so that the app can report the errors in detail.
+     */
+    private SpecPayload getMergedSpec(String hostClassName, @RawRes int[] specResourceIds) {
+        MergedSpec mergedSpec = new MergedSpec();
         JSONObject mergedJsonSpec = new JSONObject();
+        boolean malformed = false;
 
         // noinspection ForLoopReplaceableByForEach
         for (int i = 0; i < specResourceIds.length; i++) {
             int specResourceId = specResourceIds[i];
-            JSONObject jsonSpec = getJsonSpec(hostClass, specResourceId);
-            if (jsonSpec != null) {
-                mergeJsonObjects(jsonSpec, mergedJsonSpec);
+            JSONObject jsonSpec = getJsonSpec(hostClassName, specResourceId);
+            if (jsonSpec == null) {
+                continue;
+            }
+
+            mergeJsonObjects(jsonSpec, mergedJsonSpec);
+            try {
+                mergedSpec.merge(jsonSpec);
+            } catch (JSONException e) {
+                Log.w(TAG, "Malformed spec for " + hostClassName + ", sending JSON instead.", e);
+                malformed = true;
             }
         }
 
-        return mergedJsonSpec.toString();
+        return malformed
+                ? SpecPayload.of(mergedJsonSpec.toString())
+                : SpecPayload.of(mergedSpec.encode());
     }
 
     @Nullable
-    private JSONObject getJsonSpec(Class<?> hostClass, @RawRes int specResourceId) {
+    private JSONObject getJsonSpec(String hostClassName, @RawRes int specResourceId) {
         StringBuilder stringBuilder = new StringBuilder();
 
         BufferedReader reader = null;
@@ -230,7 +669,7 @@ public class Keylines {
             return new JSONObject(stringBuilder.toString());
         } catch (Resources.NotFoundException e) {
             @SuppressLint("DefaultLocale") String message = String.format(
-                    "Unable to find RAW resource with ID %d for %s", specResourceId, hostClass.getName()
+                    "Unable to find RAW resource with ID %d for %s", specResourceId, hostClassName
             );
             Log.e(TAG,  message);
             e.printStackTrace();
@@ -240,7 +679,7 @@ public class Keylines {
 
         } catch (JSONException e) {
             String message = String.format(
-                    "Unable to create JSON from resource %s for %s", specResourceId, hostClass.getName()
+                    "Unable to create JSON from resource %s for %s", specResourceId, hostClassName
             );
             Log.e(TAG, message);
             e.printStackTrace();
@@ -259,15 +698,16 @@ public class Keylines {
             key = keys.next();
             try {
                 JSONArray inJsonArray = inJsonObject.optJSONArray(key);
-                JSONArray outJsonArray = outJsonObject.optJSONArray(key);
-
-                if (inJsonArray != null && inJsonArray.length() > 0) {
-                    outJsonArray = outJsonArray == null ? new JSONArray() : outJsonArray;
-                    for (int i = 0, n = inJsonArray.length(); i < n; i++) {
-                        outJsonArray.put(inJsonArray.get(i));
-                    }
+                if (inJsonArray == null) {
+                    outJsonObject.put(key, inJsonObject.get(key)); // Later values win
+                    continue;
                 }
 
+                JSONArray outJsonArray = outJsonObject.optJSONArray(key);
+                outJsonArray = outJsonArray == null ? new JSONArray() : outJsonArray;
+                for (int i = 0, n = inJsonArray.length(); i < n; i++) {
+                    outJsonArray.put(inJsonArray.get(i));
+                }
                 outJsonObject.put(key, outJsonArray);
             } catch (JSONException e) {
                 Log.e(TAG, "Error when reading JSON.");
@@ -276,10 +716,157 @@ public class Keylines {
         }
     }
 
-    private void send(Context context, String spec) {
-        Intent intent = new Intent(ACTION_SHOW);
-        intent.putExtra(EXTRA_SPEC, spec);
-        context.sendBroadcast(intent);
+    /**
+     * Sends the spec in its binary encoding. Specs that can't be encoded are sent as JSON, the app
+     * reports malformed values and elements in detail when parsing JSON. Specs the app has already
+     * received through the service are sent as their hash alone, or as a patch of the previously
+     * sent spec if {@code patch} is set.
+     */
+    private void send(Context context, SpecPayload payload, boolean patch) {
+        SpecPayload base = sentPayload;
+        sentContext = context;
+        sentPayload = payload;
+
+        boolean known = sentSpecHashes.contains(payload.hash);
+        Bundle extras = new Bundle();
+        extras.putLong(EXTRA_SPEC_HASH, payload.hash);
+        ParcelFileDescriptor sharedSpec = known || (patch && putPatch(extras, base, payload))
+                ? null : putSpec(extras, payload, true);
+
+        Message message = Message.obtain(null, MSG_SHOW);
+        message.setData(extras);
+        message.replyTo = replyMessenger;
+        boolean sent = sendToService(message);
+
+        // The app receives its own duplicate of the descriptor with the message
+        try { if (sharedSpec != null) { sharedSpec.close(); } } catch (IOException ignored) {}
+
+        if (sent) {
+            sentSpecHashes.add(payload.hash);
+        } else {
+            // Intents can't carry file descriptors
+            extras = new Bundle();
+            putSpec(extras, payload, false);
+
+            Intent intent = new Intent(ACTION_SHOW);
+            intent.putExtras(extras);
+            context.sendBroadcast(intent);
+        }
+    }
+
+    private void resendSpec(long hash) {
+        sentSpecHashes.remove(hash);
+        if (sentPayload != null && sentPayload.hash == hash) {
+            send(sentContext, sentPayload, false);
+        } // Else superseded, the app has been sent a newer spec since
+    }
+
+    /**
+     * Puts a patch from the base spec into the extras, if the app holds the base spec. The app
+     * checks that it still does, and requests the whole spec otherwise.
+     *
+     * @return {@code true} if a patch was put.
+     */
+    private boolean putPatch(Bundle extras, @Nullable SpecPayload base, SpecPayload payload) {
+        if (base == null || base.bytes == null || payload.bytes == null
+                || !sentSpecHashes.contains(base.hash)) {
+            return false;
+        }
+
+        SpecPatch patch = SpecPatch.between(base.bytes, payload.bytes);
+        if (patch == null) {
+            return false;
+        }
+
+        extras.putLong(EXTRA_SPEC_BASE_HASH, base.hash);
+        extras.putByteArray(EXTRA_SPEC_PATCH_REMOVED, patch.removed);
+        extras.putByteArray(EXTRA_SPEC_PATCH_ADDED, patch.added);
+        return true;
+    }
+
+    /**
+     * Puts the spec into the extras. Large encoded specs are shared through a file descriptor when
+     * {@code share} is set, so that they don't have to fit into a binder transaction and the app
+     * can map them instead of copying them.
+     *
+     * @return The shared spec's descriptor, to be closed once sent, or {@code null}.
+     */
+    @Nullable
+    private ParcelFileDescriptor putSpec(Bundle extras, SpecPayload payload, boolean share) {
+        if (payload.bytes == null) {
+            extras.putString(EXTRA_SPEC, payload.json);
+            return null;
+        }
+
+        boolean large = payload.bytes.length >= SHARED_SPEC_MIN_SIZE_BYTES;
+        ParcelFileDescriptor sharedSpec = share && large ? shareSpec(payload.bytes) : null;
+        if (sharedSpec != null) {
+            extras.putParcelable(EXTRA_SPEC_DESCRIPTOR, sharedSpec);
+        } else {
+            extras.putByteArray(EXTRA_SPEC_BYTES, payload.bytes);
+        }
+        return sharedSpec;
+    }
+
+    /**
+     * Writes the spec to an unlinked file in the cache directory. The file lives on only as long
+     * as the descriptors to it, so nothing is left behind if either process dies.
+     *
+     * @return A read-only descriptor, {@code null} if the spec couldn't be written.
+     */
+    @Nullable
+    private ParcelFileDescriptor shareSpec(byte[] bytes) {
+        File file = null;
+        FileOutputStream out = null;
+        try {
+            file = File.createTempFile("spec", ASSET_EXTENSION, cacheDir);
+            out = new FileOutputStream(file);
+            out.write(bytes);
+            out.close();
+            out = null;
+
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to share spec, sending it inline.", e);
+            return null;
+        } finally {
+            try { if (out != null) { out.close(); } } catch (IOException ignored) {}
+            if (file != null) {
+                // noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the message was delivered, {@code false} if it has to be broadcast.
+     */
+    private boolean sendToService(Message message) {
+        Messenger serviceMessenger = this.serviceMessenger;
+        if (serviceMessenger == null) {
+            return false;
+        }
+
+        try {
+            serviceMessenger.send(message);
+            return true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "Keylines app unreachable, falling back to broadcasts.", e);
+            this.serviceMessenger = null;
+            return false;
+        }
+    }
+
+    private static class SpecRequest {
+        final Context context;
+        final String hostClassName;
+        @RawRes final int[] specResourceIds;
+
+        SpecRequest(Context context, String hostClassName, @RawRes int[] specResourceIds) {
+            this.context = context;
+            this.hostClassName = hostClassName;
+            this.specResourceIds = specResourceIds;
+        }
     }
 
 }
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.ProviderInfo;
 import android.os.IBinder;
+import android.os.Messenger;
 import android.util.Log;
 
 import static com.mobsandgeeks.keylines.sdk.Shared.PACKAGE_NAME;
@@ -64,11 +65,13 @@ public final class KeylinesIgnition extends ContentProviderAdapter implements Se
     @Override
     public void onServiceConnected(ComponentName componentName, IBinder iBinder) {
         Log.d(TAG, "Connected to Keylines app.");
+        Keylines.getInstance().setServiceMessenger(new Messenger(iBinder));
     }
 
     @Override
     public void onServiceDisconnected(ComponentName componentName) {
         Log.d(TAG, "Disconnected from Keylines app.");
+        Keylines.getInstance().setServiceMessenger(null);
     }
 
     private void bindToService(Context context) {
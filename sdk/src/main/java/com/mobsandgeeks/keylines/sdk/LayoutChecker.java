@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+
+import com.mobsandgeeks.keylines.spec.MergedSpec;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_BOTTOM;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_HORIZONTAL_CENTER;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_LEFT;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_RIGHT;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_TOP;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_VERTICAL_CENTER;
+
+/**
+ * Checks that the views of a window sit on the keylines of the shown spec and that their text
+ * baselines sit on its baseline grid. An edge a few dips off a keyline was most likely meant to
+ * be on it, edges further away aren't reported.
+ *
+ * <p>Checks are incremental. Every view is observed with a {@link View.OnLayoutChangeListener},
+ * which is called only for views that were laid out again, and only their subtrees are checked
+ * after the next global layout. Checks are throttled and split into slices that stay within a
+ * per-frame time budget.</p>
+ *
+ * <p>Not thread-safe, must be used from the main thread.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class LayoutChecker
+        implements ViewTreeObserver.OnGlobalLayoutListener, View.OnLayoutChangeListener {
+
+    // Constants
+    private static final long MIN_CHECK_INTERVAL_MILLIS = 100;
+    private static final long FRAME_INTERVAL_MILLIS = 16;
+    private static final long FRAME_BUDGET_NANOS = 2000000; // 2ms of a 16ms frame
+    private static final float NEAR_MISS_DIP = 4f;
+    private static final float TOLERANCE_PX = 0.5f;
+    private static final int RECT_SIZE = 4;
+
+    /**
+     * Receives the bounds of the views that are off the spec, on screen.
+     */
+    interface Listener {
+
+        /**
+         * @param bounds Left, top, right and bottom of every view off the spec, in pixels.
+         */
+        void onViolations(float[] bounds);
+    }
+
+    // Attributes
+    private final View decorView;
+    private final float density;
+    private final Handler handler;
+    private final Listener listener;
+    private boolean attached = false;
+
+    // Spec, resolved for the decor view's size
+    private MergedSpec spec;
+    private float[] keylineXs = new float[0];
+    private float[] keylineYs = new float[0];
+    private float gridCellSizePx;
+    private float nearMissPx;
+    private int resolvedWidth = -1;
+    private int resolvedHeight = -1;
+
+    // Incremental checks
+    private final Set<View> observedViews =
+            Collections.newSetFromMap(new WeakHashMap<View, Boolean>());
+    private final Set<View> dirtyViews = new LinkedHashSet<View>();
+    private final ArrayDeque<View> pendingViews = new ArrayDeque<View>();
+    private final Map<View, float[]> violations = new WeakHashMap<View, float[]>();
+    private boolean violationsChanged = false;
+    private boolean checkScheduled = false;
+    private long lastCheckMillis;
+    private final int[] decorLocation = new int[2];
+    private final int[] location = new int[2];
+
+    private final Runnable check = new Runnable() {
+
+        @Override
+        public void run() {
+            checkScheduled = false;
+            check();
+        }
+    };
+
+    LayoutChecker(View decorView, Handler handler, Listener listener) {
+        this.decorView = decorView;
+        this.density = decorView.getResources().getDisplayMetrics().density;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    boolean isFor(View decorView) {
+        return this.decorView == decorView;
+    }
+
+    void attach() {
+        attached = true;
+        decorView.getViewTreeObserver().addOnGlobalLayoutListener(this);
+        dirtyViews.add(decorView);
+        scheduleCheck();
+    }
+
+    /**
+     * Stops observing the window and clears the reported violations.
+     */
+    @SuppressWarnings("deprecation") // removeOnGlobalLayoutListener() is API 16
+    void detach() {
+        attached = false;
+        decorView.getViewTreeObserver().removeGlobalOnLayoutListener(this);
+        handler.removeCallbacks(check);
+        checkScheduled = false;
+
+        for (View view : observedViews) {
+            view.removeOnLayoutChangeListener(this);
+        }
+        observedViews.clear();
+        dirtyViews.clear();
+        pendingViews.clear();
+        violations.clear();
+        listener.onViolations(new float[0]);
+    }
+
+    /**
+     * Checks the whole window against a new spec.
+     *
+     * @param spec The shown spec, {@code null} if it can't be checked against.
+     */
+    void setSpec(@Nullable MergedSpec spec) {
+        this.spec = spec;
+        resolvedWidth = resolvedHeight = -1;
+
+        pendingViews.clear();
+        violations.clear();
+        violationsChanged = true;
+        dirtyViews.add(decorView);
+        scheduleCheck();
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        if (!dirtyViews.isEmpty()) {
+            scheduleCheck();
+        }
+    }
+
+    @Override
+    public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        if (attached) {
+            dirtyViews.add(view);
+        }
+    }
+
+    private void scheduleCheck() {
+        if (checkScheduled || !attached) {
+            return;
+        }
+
+        checkScheduled = true;
+        long nextCheckMillis = lastCheckMillis + MIN_CHECK_INTERVAL_MILLIS;
+        long delay = pendingViews.isEmpty()
+                ? Math.max(0, nextCheckMillis - SystemClock.uptimeMillis())
+                : FRAME_INTERVAL_MILLIS; // Continues a check
+        handler.postDelayed(check, delay);
+    }
+
+    /**
+     * Checks pending views until the frame budget runs out, the rest is checked in the next frame.
+     * Violations are reported once all the views that were laid out again have been checked.
+     */
+    private void check() {
+        if (spec == null) {
+            dirtyViews.clear();
+            report();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        if (pendingViews.isEmpty()) {
+            lastCheckMillis = SystemClock.uptimeMillis();
+            resolve();
+            enqueueDirtySubtrees();
+        }
+
+        while (!pendingViews.isEmpty()) {
+            if (System.nanoTime() - start > FRAME_BUDGET_NANOS) {
+                scheduleCheck();
+                return;
+            }
+            checkView(pendingViews.poll());
+        }
+
+        report();
+        if (!dirtyViews.isEmpty()) {
+            scheduleCheck(); // Laid out again while being checked
+        }
+    }
+
+    /**
+     * Resolves the keylines for the decor view's size, a new size invalidates every view.
+     */
+    private void resolve() {
+        decorView.getLocationOnScreen(decorLocation);
+        final int width = decorView.getWidth();
+        final int height = decorView.getHeight();
+        if (width == resolvedWidth && height == resolvedHeight) {
+            return;
+        }
+        resolvedWidth = width;
+        resolvedHeight = height;
+
+        final List<MergedSpec.Element> keylines = spec.keylines();
+        int verticalCount = 0;
+        int horizontalCount = 0;
+        for (int i = 0, n = keylines.size(); i < n; i++) {
+            int from = keylines.get(i).from;
+            verticalCount += isVertical(from) ? 1 : 0;
+            horizontalCount += isHorizontal(from) ? 1 : 0;
+        }
+
+        keylineXs = new float[verticalCount];
+        keylineYs = new float[horizontalCount];
+        for (int i = 0, x = 0, y = 0, n = keylines.size(); i < n; i++) {
+            MergedSpec.Element keyline = keylines.get(i);
+            float offset = Float.intBitsToFloat(keyline.offset);
+            if (isVertical(keyline.from)) {
+                keylineXs[x++] = getPositionPx(offset, keyline.from, density, width, height);
+            } else if (isHorizontal(keyline.from)) {
+                keylineYs[y++] = getPositionPx(offset, keyline.from, density, width, height);
+            } // Else unknown to this version of the SDK
+        }
+        Arrays.sort(keylineXs);
+        Arrays.sort(keylineYs);
+
+        gridCellSizePx = spec.baselineGridCellSize() * density;
+        nearMissPx = NEAR_MISS_DIP * density;
+        dirtyViews.add(decorView);
+    }
+
+    /**
+     * Queues the views that were laid out again, except for those within another one's subtree.
+     */
+    private void enqueueDirtySubtrees() {
+        for (View view : dirtyViews) {
+            if (view == decorView || isInWindow(view)) {
+                pendingViews.add(view);
+            }
+        }
+        dirtyViews.clear();
+    }
+
+    /**
+     * @return {@code true} if the view is within the decor view, and none of its ancestors but
+     * the decor view itself was laid out again.
+     */
+    private boolean isInWindow(View view) {
+        ViewParent parent = view.getParent();
+        while (parent instanceof View) {
+            if (parent == decorView) {
+                return !dirtyViews.contains(decorView);
+            } else if (dirtyViews.contains(parent)) {
+                return false; // Checked with its ancestor
+            }
+            parent = parent.getParent();
+        }
+        return false; // Removed, or in another window
+    }
+
+    private void checkView(View view) {
+        if (observedViews.add(view)) {
+            view.addOnLayoutChangeListener(this);
+        }
+        if (violations.remove(view) != null) {
+            violationsChanged = true;
+        }
+        if (view.getVisibility() != View.VISIBLE) {
+            return; // Nor is its subtree
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup viewGroup = (ViewGroup) view;
+            for (int i = 0, n = viewGroup.getChildCount(); i < n; i++) {
+                pendingViews.add(viewGroup.getChildAt(i));
+            }
+        }
+
+        final int width = view.getWidth();
+        final int height = view.getHeight();
+        if (view == decorView || width == 0 || height == 0) {
+            return;
+        }
+
+        view.getLocationOnScreen(location);
+        float left = location[0] - decorLocation[0];
+        float top = location[1] - decorLocation[1];
+        boolean violation = isNearMiss(keylineXs, left, nearMissPx)
+                || isNearMiss(keylineXs, left + width, nearMissPx)
+                || isNearMiss(keylineYs, top, nearMissPx)
+                || isNearMiss(keylineYs, top + height, nearMissPx);
+
+        // View groups report the baseline of one of their children
+        int baseline = view instanceof ViewGroup ? -1 : view.getBaseline();
+        if (baseline >= 0 && gridCellSizePx > 0) {
+            violation |= isOffGrid(top + baseline, gridCellSizePx);
+        }
+
+        if (violation) {
+            violations.put(view, new float[] {
+                    location[0], location[1], location[0] + width, location[1] + height
+            });
+            violationsChanged = true;
+        }
+    }
+
+    private void report() {
+        if (!violationsChanged) {
+            return;
+        }
+        violationsChanged = false;
+
+        float[] bounds = new float[violations.size() * RECT_SIZE];
+        int length = 0;
+        for (Map.Entry<View, float[]> violation : violations.entrySet()) {
+            View view = violation.getKey();
+            if (view != null && view.isShown()) {
+                System.arraycopy(violation.getValue(), 0, bounds, length, RECT_SIZE);
+                length += RECT_SIZE;
+            }
+        }
+        listener.onViolations(length == bounds.length ? bounds : Arrays.copyOf(bounds, length));
+    }
+
+    /**
+     * @param keylines Sorted keyline positions, in pixels.
+     * @return {@code true} if the position is close to, but not on, a keyline.
+     */
+    static boolean isNearMiss(float[] keylines, float position, float nearMissPx) {
+        final int n = keylines.length;
+        if (n == 0) {
+            return false;
+        }
+
+        int i = Arrays.binarySearch(keylines, position);
+        if (i >= 0) {
+            return false;
+        }
+        i = -i - 1; // Insertion point
+        float distance = Math.min(
+                i > 0 ? position - keylines[i - 1] : Float.MAX_VALUE,
+                i < n ? keylines[i] - position : Float.MAX_VALUE);
+        return distance > TOLERANCE_PX && distance <= nearMissPx;
+    }
+
+    /**
+     * @return {@code true} if the baseline is not on a line of the grid, above the window too.
+     */
+    static boolean isOffGrid(float baseline, float gridCellSizePx) {
+        float remainder = baseline % gridCellSizePx;
+        if (remainder < 0) {
+            remainder += gridCellSizePx; // Above the window's top
+        }
+        return Math.min(remainder, gridCellSizePx - remainder) > TOLERANCE_PX;
+    }
+
+    /**
+     * @return The keyline's distance from the window's left or top edge, in pixels.
+     */
+    static float getPositionPx(float offset, int from, float density, int width, int height) {
+        final float position = offset * density;
+        switch (from) {
+            case FROM_LEFT:
+            case FROM_TOP:
+                return position;
+
+            case FROM_RIGHT:
+                return width - position;
+
+            case FROM_BOTTOM:
+                return height - position;
+
+            case FROM_VERTICAL_CENTER:
+                return (height / 2) + position;
+
+            case FROM_HORIZONTAL_CENTER:
+                return (width / 2) + position;
+
+            default:
+                throw new IllegalStateException("Invalid keyline offset.");
+        }
+    }
+
+    private static boolean isVertical(int from) {
+        return from == FROM_LEFT || from == FROM_RIGHT || from == FROM_HORIZONTAL_CENTER;
+    }
+
+    private static boolean isHorizontal(int from) {
+        return from == FROM_TOP || from == FROM_BOTTOM || from == FROM_VERTICAL_CENTER;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import android.content.Context;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+/**
+ * Reads {@link DesignSpec} annotations at runtime, for apps that don't run the
+ * {@code sdk-compiler} annotation processor. Host classes are loaded without being initialized.
+ * Only the activities in the manifest are known up front, so fragments aren't warmed up.
+ *
+ * @author Ragunath Jawahar
+ */
+final class ReflectiveDesignSpecIndex implements DesignSpecIndex {
+
+    // Constants
+    private static final String TAG = ReflectiveDesignSpecIndex.class.getSimpleName();
+
+    // Attributes
+    private final Context context;
+
+    ReflectiveDesignSpecIndex(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Nullable
+    @Override
+    public int[] get(String hostClassName) {
+        try {
+            Class<?> hostClass = Class.forName(hostClassName, false, context.getClassLoader());
+            DesignSpec designSpec = hostClass.getAnnotation(DesignSpec.class);
+            return designSpec != null ? designSpec.value() : null;
+        } catch (ClassNotFoundException e) {
+            Log.w(TAG, "Unable to load " + hostClassName, e);
+            return null;
+        }
+    }
+
+    @Override
+    public String[] hostClassNames() {
+        try {
+            ActivityInfo[] activities = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), PackageManager.GET_ACTIVITIES).activities;
+            if (activities == null) {
+                return new String[0];
+            }
+
+            String[] activityClassNames = new String[activities.length];
+            for (int i = 0; i < activities.length; i++) {
+                activityClassNames[i] = activities[i].name;
+            }
+            return activityClassNames;
+        } catch (PackageManager.NameNotFoundException e) {
+            return new String[0]; // Can't happen, it's our own package
+        }
+    }
+
+}
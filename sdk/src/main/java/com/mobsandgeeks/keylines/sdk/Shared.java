@@ -25,4 +25,12 @@ interface Shared {
     String NAMESPACE_ACTION = PACKAGE_NAME + ".intent.action";
     String NAMESPACE_EXTRA = PACKAGE_NAME + ".intent.extra";
 
+    // Messages to the Keylines app's StethoscopeService
+    int MSG_SHOW = 1;
+    int MSG_STOP = 2;
+    int MSG_HIGHLIGHT = 3;
+
+    // Replies from the Keylines app, must not clash with the SDK worker's own messages
+    int MSG_REQUEST_SPEC = 100;
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import android.support.annotation.Nullable;
+
+/**
+ * A merged spec, ready to be sent to the Keylines app. Holds the binary encoding, or the JSON if
+ * the spec couldn't be encoded, and a hash of the content. The app keeps specs it has seen by
+ * hash, so a known spec is sent as its hash alone.
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecPayload {
+
+    // Constants
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    @Nullable final byte[] bytes;
+    @Nullable final String json;
+    final long hash;
+
+    static SpecPayload of(byte[] bytes) {
+        return new SpecPayload(bytes, null);
+    }
+
+    /**
+     * A spec that couldn't be encoded, the app reports malformed values and elements in detail
+     * when parsing JSON.
+     */
+    static SpecPayload of(String json) {
+        return new SpecPayload(null, json);
+    }
+
+    /**
+     * @return The approximate size of the payload in bytes, for bounding the cache.
+     */
+    int size() {
+        return bytes != null ? bytes.length : json.length() * 2;
+    }
+
+    private SpecPayload(@Nullable byte[] bytes, @Nullable String json) {
+        this.bytes = bytes;
+        this.json = json;
+        this.hash = bytes != null ? hash(bytes) : hash(json);
+    }
+
+    /**
+     * 64-bit FNV-1a, stable across processes and releases unlike {@link Object#hashCode()}.
+     */
+    private static long hash(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        // noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < bytes.length; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(String json) {
+        long hash = ~FNV_OFFSET_BASIS; // Keeps JSON and binary payloads apart
+        for (int i = 0, n = json.length(); i < n; i++) {
+            char c = json.charAt(i);
+            hash ^= c & 0xFF;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.sdk;
+
+import org.junit.Test;
+
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_BOTTOM;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_HORIZONTAL_CENTER;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_LEFT;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_RIGHT;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_TOP;
+import static com.mobsandgeeks.keylines.spec.MergedSpec.FROM_VERTICAL_CENTER;
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class LayoutCheckerTest {
+
+    private static final float[] KEYLINES = { 16, 72, 344 };
+    private static final float NEAR_MISS_PX = 8;
+
+    @Test
+    public void isNearMiss_acceptsPositionsOnKeylines() {
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 16, NEAR_MISS_PX));
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 72.4f, NEAR_MISS_PX));
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 343.5f, NEAR_MISS_PX));
+    }
+
+    @Test
+    public void isNearMiss_reportsPositionsCloseToKeylines() {
+        assertTrue(LayoutChecker.isNearMiss(KEYLINES, 12, NEAR_MISS_PX));
+        assertTrue(LayoutChecker.isNearMiss(KEYLINES, 80, NEAR_MISS_PX));
+        assertTrue(LayoutChecker.isNearMiss(KEYLINES, 340, NEAR_MISS_PX));
+    }
+
+    @Test
+    public void isNearMiss_acceptsPositionsFarFromKeylines() {
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 0, NEAR_MISS_PX));
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 44, NEAR_MISS_PX));
+        assertFalse(LayoutChecker.isNearMiss(KEYLINES, 360, NEAR_MISS_PX));
+    }
+
+    @Test
+    public void isNearMiss_acceptsEveryPositionWithoutKeylines() {
+        assertFalse(LayoutChecker.isNearMiss(new float[0], 12, NEAR_MISS_PX));
+    }
+
+    @Test
+    public void isOffGrid_acceptsBaselinesOnGridLines() {
+        assertFalse(LayoutChecker.isOffGrid(0, 8));
+        assertFalse(LayoutChecker.isOffGrid(24, 8));
+        assertFalse(LayoutChecker.isOffGrid(23.6f, 8));
+        assertFalse(LayoutChecker.isOffGrid(24.4f, 8));
+    }
+
+    @Test
+    public void isOffGrid_reportsBaselinesBetweenGridLines() {
+        assertTrue(LayoutChecker.isOffGrid(23, 8));
+        assertTrue(LayoutChecker.isOffGrid(28, 8));
+        assertTrue(LayoutChecker.isOffGrid(25, 8));
+    }
+
+    @Test
+    public void isOffGrid_checksBaselinesAboveTheWindow() {
+        assertFalse(LayoutChecker.isOffGrid(-16, 8));
+        assertFalse(LayoutChecker.isOffGrid(-0.4f, 8));
+        assertTrue(LayoutChecker.isOffGrid(-4, 8));
+        assertTrue(LayoutChecker.isOffGrid(-1, 8));
+    }
+
+    @Test
+    public void getPositionPx_scalesByDensity() {
+        assertEquals(32, LayoutChecker.getPositionPx(16, FROM_LEFT, 2, 720, 1280), 0);
+        assertEquals(48, LayoutChecker.getPositionPx(16, FROM_TOP, 3, 720, 1280), 0);
+    }
+
+    @Test
+    public void getPositionPx_anchorsToFarEdges() {
+        assertEquals(688, LayoutChecker.getPositionPx(16, FROM_RIGHT, 2, 720, 1280), 0);
+        assertEquals(1248, LayoutChecker.getPositionPx(16, FROM_BOTTOM, 2, 720, 1280), 0);
+    }
+
+    @Test
+    public void getPositionPx_anchorsToCenters() {
+        assertEquals(392,
+                LayoutChecker.getPositionPx(16, FROM_HORIZONTAL_CENTER, 2, 720, 1280), 0);
+        assertEquals(608,
+                LayoutChecker.getPositionPx(-16, FROM_VERTICAL_CENTER, 2, 720, 1280), 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getPositionPx_rejectsUnknownAnchors() {
+        LayoutChecker.getPositionPx(16, 42, 2, 720, 1280);
+    }
+
+}
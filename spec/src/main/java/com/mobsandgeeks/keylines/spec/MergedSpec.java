@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.keylines.spec;
+
+import android.support.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.mobsandgeeks.keylines.spec.SpecEncoder.MAGIC;
+import static com.mobsandgeeks.keylines.spec.SpecEncoder.UTF_8;
+import static com.mobsandgeeks.keylines.spec.SpecEncoder.VERSION;
+import static com.mobsandgeeks.keylines.spec.SpecEncoder.writeVarint;
+
+/**
+ * A spec merged from one or more specs, given as JSON or encoded. Values are replaced by later
+ * specs that set them, elements accumulate in order and duplicates are dropped, so that the edge
+ * margins shared by several specs are sent and drawn once.
+ *
+ * <p>Floats are kept as their raw bits, so that they are compared and written back exactly.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+public final class MergedSpec {
+
+    // Constants
+    static final int VALUE_COUNT = 4; // One per flag, in flag order
+    private static final int ALL_FLAGS = (1 << VALUE_COUNT) - 1;
+
+    private static final int VALUE_BASELINE_GRID_CELL_SIZE = 0;
+    private static final int VALUE_BASELINE_GRID_COLOR = 1;
+    private static final int VALUE_KEYLINES_COLOR = 2;
+    private static final int VALUE_SPACINGS_COLOR = 3;
+
+    // Smallest positive cell size the app decodes, smaller ones would draw a line on every pixel
+    private static final float MIN_BASELINE_GRID_CELL_SIZE = 1;
+
+    // Wire ordinals, in the order of the app's 'From' enum
+    public static final int FROM_LEFT = 0;
+    public static final int FROM_RIGHT = 1;
+    public static final int FROM_TOP = 2;
+    public static final int FROM_BOTTOM = 3;
+    public static final int FROM_VERTICAL_CENTER = 4;
+    public static final int FROM_HORIZONTAL_CENTER = 5;
+    private static final String[] FROM_NAMES = {
+            "LEFT", "RIGHT", "TOP", "BOTTOM", "VERTICAL_CENTER", "HORIZONTAL_CENTER"
+    };
+
+    // JSON Keys
+    private static final String KEY_BASELINE_GRID_CELL_SIZE = "baselineGridCellSize";
+    private static final String KEY_BASELINE_GRID_COLOR = "baselineGridColor";
+    private static final String KEY_KEYLINES_COLOR = "keylinesColor";
+    private static final String KEY_KEYLINES = "keylines";
+    private static final String KEY_SPACINGS_COLOR = "spacingsColor";
+    private static final String KEY_SPACINGS = "spacings";
+
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_FROM = "from";
+    private static final String KEY_LABEL = "label";
+
+    // Values
+    int flags;
+    final int[] values = new int[VALUE_COUNT];
+
+    // Elements
+    final List<Element> keylines = new ArrayList<Element>();
+    final List<Element> spacings = new ArrayList<Element>();
+    private final Set<Element> keylineSet = new HashSet<Element>();
+    private final Set<Element> spacingSet = new HashSet<Element>();
+
+    /**
+     * Merges a JSON spec.
+     *
+     * @throws JSONException If a value or an element is malformed, the app's JSON parser reports
+     *      these in more detail, so callers should fall back to sending the JSON instead.
+     */
+    public void merge(JSONObject json) throws JSONException {
+        if (json.has(KEY_BASELINE_GRID_CELL_SIZE)) {
+            float cellSize = (float) json.getDouble(KEY_BASELINE_GRID_CELL_SIZE);
+            if (cellSize > 0 && cellSize < MIN_BASELINE_GRID_CELL_SIZE) {
+                throw new JSONException("Invalid value for '" + KEY_BASELINE_GRID_CELL_SIZE
+                        + "': " + cellSize);
+            }
+            setValue(VALUE_BASELINE_GRID_CELL_SIZE, Float.floatToIntBits(cellSize));
+        }
+        if (json.has(KEY_BASELINE_GRID_COLOR)) {
+            setValue(VALUE_BASELINE_GRID_COLOR, (int) json.getLong(KEY_BASELINE_GRID_COLOR));
+        }
+        if (json.has(KEY_KEYLINES_COLOR)) {
+            setValue(VALUE_KEYLINES_COLOR, (int) json.getLong(KEY_KEYLINES_COLOR));
+        }
+        if (json.has(KEY_SPACINGS_COLOR)) {
+            setValue(VALUE_SPACINGS_COLOR, (int) json.getLong(KEY_SPACINGS_COLOR));
+        }
+
+        JSONArray jsonKeylines = json.optJSONArray(KEY_KEYLINES);
+        for (int i = 0, n = jsonKeylines != null ? jsonKeylines.length() : 0; i < n; i++) {
+            JSONObject keyline = jsonKeylines.getJSONObject(i);
+            add(keylines, keylineSet, new Element(
+                    Float.floatToIntBits((float) keyline.getDouble(KEY_OFFSET)), 0,
+                    getFromOrdinal(keyline),
+                    keyline.isNull(KEY_LABEL) ? null : keyline.getString(KEY_LABEL)
+            ));
+        }
+
+        JSONArray jsonSpacings = json.optJSONArray(KEY_SPACINGS);
+        for (int i = 0, n = jsonSpacings != null ? jsonSpacings.length() : 0; i < n; i++) {
+            JSONObject spacing = jsonSpacings.getJSONObject(i);
+            add(spacings, spacingSet, new Element(
+                    Float.floatToIntBits((float) spacing.getDouble(KEY_OFFSET)),
+                    Float.floatToIntBits((float) spacing.getDouble(KEY_SIZE)),
+                    getFromOrdinal(spacing), null
+            ));
+        }
+    }
+
+    /**
+     * Merges one or more encoded specs.
+     *
+     * @throws IllegalArgumentException If the encoded spec is malformed.
+     */
+    public void merge(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        try {
+            do {
+                mergeSegment(buffer);
+            } while (buffer.hasRemaining());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated spec");
+        }
+    }
+
+    /**
+     * @return The baseline grid's cell size in dips, {@code 0} if the spec has no baseline grid.
+     */
+    public float baselineGridCellSize() {
+        return (flags & (1 << VALUE_BASELINE_GRID_CELL_SIZE)) != 0
+                ? Float.intBitsToFloat(values[VALUE_BASELINE_GRID_CELL_SIZE]) : 0;
+    }
+
+    /**
+     * @return The keylines, in the order they were merged.
+     */
+    public List<Element> keylines() {
+        return Collections.unmodifiableList(keylines);
+    }
+
+    /**
+     * @return The spacings, in the order they were merged.
+     */
+    public List<Element> spacings() {
+        return Collections.unmodifiableList(spacings);
+    }
+
+    /**
+     * Encodes the spec as a single segment.
+     */
+    public byte[] encode() {
+        return encode(flags, values, keylines, spacings);
+    }
+
+    /**
+     * Encodes a single segment, only the values whose flags are set are written.
+     */
+    static byte[] encode(int flags, int[] values, List<Element> keylines, List<Element> spacings) {
+        // Intern labels
+        List<String> labels = new ArrayList<String>();
+        Map<String, Integer> labelIndices = new HashMap<String, Integer>();
+        for (int i = 0, n = keylines.size(); i < n; i++) {
+            String label = keylines.get(i).label;
+            if (label != null && !labelIndices.containsKey(label)) {
+                labelIndices.put(label, labels.size());
+                labels.add(label);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + keylines.size() * 6 + spacings.size() * 9);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(flags);
+            for (int i = 0; i < VALUE_COUNT; i++) {
+                if ((flags & (1 << i)) != 0) {
+                    out.writeInt(values[i]);
+                }
+            }
+
+            writeVarint(out, labels.size());
+            for (int i = 0, n = labels.size(); i < n; i++) {
+                byte[] label = labels.get(i).getBytes(UTF_8);
+                writeVarint(out, label.length);
+                out.write(label);
+            }
+
+            writeVarint(out, keylines.size());
+            for (int i = 0, n = keylines.size(); i < n; i++) {
+                Element keyline = keylines.get(i);
+                out.writeInt(keyline.offset);
+                out.writeByte(keyline.from);
+                writeVarint(out, keyline.label != null ? labelIndices.get(keyline.label) + 1 : 0);
+            }
+
+            writeVarint(out, spacings.size());
+            for (int i = 0, n = spacings.size(); i < n; i++) {
+                Element spacing = spacings.get(i);
+                out.writeInt(spacing.offset);
+                out.writeInt(spacing.size);
+                out.writeByte(spacing.from);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e); // Can't happen, the stream is in memory
+        }
+        return bytes.toByteArray();
+    }
+
+    private void setValue(int index, int value) {
+        flags |= 1 << index;
+        values[index] = value;
+    }
+
+    private static void add(List<Element> elements, Set<Element> elementSet, Element element) {
+        if (elementSet.add(element)) {
+            elements.add(element);
+        }
+    }
+
+    private void mergeSegment(ByteBuffer buffer) {
+        if ((buffer.getShort() & 0xFFFF) != MAGIC || (buffer.get() & 0xFF) != VERSION) {
+            throw new IllegalArgumentException("Not a spec");
+        }
+        int segmentFlags = buffer.get() & 0xFF;
+        if ((segmentFlags & ~ALL_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unknown flags");
+        }
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            if ((segmentFlags & (1 << i)) != 0) {
+                setValue(i, buffer.getInt());
+            }
+        }
+
+        String[] labels = new String[readCount(buffer)];
+        for (int i = 0; i < labels.length; i++) {
+            byte[] label = new byte[readCount(buffer)];
+            buffer.get(label);
+            labels[i] = new String(label, UTF_8);
+        }
+
+        for (int i = 0, n = readCount(buffer); i < n; i++) {
+            int offset = buffer.getInt();
+            int from = buffer.get() & 0xFF;
+            int label = readVarint(buffer);
+            if (label > labels.length) {
+                throw new IllegalArgumentException("Invalid label index");
+            }
+            add(keylines, keylineSet,
+                    new Element(offset, 0, from, label != 0 ? labels[label - 1] : null));
+        }
+
+        for (int i = 0, n = readCount(buffer); i < n; i++) {
+            int offset = buffer.getInt();
+            int size = buffer.getInt();
+            add(spacings, spacingSet, new Element(offset, size, buffer.get() & 0xFF, null));
+        }
+    }
+
+    private static int getFromOrdinal(JSONObject element) throws JSONException {
+        String from = element.getString(KEY_FROM);
+        for (int i = 0; i < FROM_NAMES.length; i++) {
+            if (FROM_NAMES[i].equalsIgnoreCase(from)) {
+                return i;
+            }
+        }
+        throw new JSONException("Invalid value for '" + KEY_FROM + "': " + from);
+    }
+
+    /**
+     * Reads a count, which can't be larger than the rest of the payload.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarint(buffer);
+        if (count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count");
+        }
+        return count;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * A keyline or a spacing, as encoded.
+     */
+    public static final class Element {
+        public final int offset; // Raw float bits, in dips
+        public final int size; // Raw float bits, in dips, 0 for keylines
+        public final int from;
+        @Nullable public final String label;
+
+        Element(int offset, int size, int from, @Nullable String label) {
+            this.offset = offset;
+            this.size = size;
+            this.from = from;
+            this.label = label;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Element)) {
+                return false;
+            }
+
+            Element other = (Element) o;
+            return offset == other.offset && size == other.size && from == other.from
+                    && (label == null ? other.label == null : label.equals(other.label));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = offset;
+            result = 31 * result + size;
+            result = 31 * result + from;
+            result = 31 * result + (label != null ? label.hashCode() : 0);
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.spec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Exposes the SDK's {@link SpecEncoder} to the build, so that specs precompiled into assets are
+ * encoded exactly like the specs the SDK encodes at runtime.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class PrecompiledSpecEncoder {
+
+    /**
+     * @param json A single spec.
+     * @return The encoded spec.
+     * @throws JSONException If the spec can't be encoded.
+     */
+    public static byte[] encode(String json) throws JSONException {
+        return SpecEncoder.encode(new JSONObject(json));
+    }
+
+    private PrecompiledSpecEncoder() {
+        throw new AssertionError("No instances.");
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.keylines.spec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes a JSON spec into the binary format read by the Keylines app, see
+ * {@link org.lucasr.dspec.SpecCodec} for the layout. Both must be kept in sync.
+ *
+ * @author Ragunath Jawahar
+ */
+class SpecEncoder {
+
+    // Constants
+    static final int MAGIC = 0x4B4C; // "KL"
+    static final int VERSION = 1;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Encodes a spec, duplicate elements are dropped.
+     *
+     * @param json The spec.
+     * @return The encoded spec.
+     * @throws JSONException If a value or an element is malformed, the app's JSON parser reports
+     *      these in more detail, so callers should fall back to sending the JSON instead.
+     */
+    static byte[] encode(JSONObject json) throws JSONException {
+        MergedSpec spec = new MergedSpec();
+        spec.merge(json);
+        return spec.encode();
+    }
+
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private SpecEncoder() {
+        throw new AssertionError("No instances.");
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.keylines.spec;
+
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.keylines.spec.MergedSpec.Element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.mobsandgeeks.keylines.spec.MergedSpec.VALUE_COUNT;
+
+/**
+ * The difference between two encoded specs, applied by the Keylines app to the spec it already
+ * holds, see {@code org.lucasr.dspec.SpecCodec#patch}. A patch is a pair of encoded specs, the
+ * elements to remove and the elements and values to add. Elements are matched by value, one to
+ * one.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class SpecPatch {
+
+    // Attributes
+    public final byte[] removed;
+    public final byte[] added;
+
+    /**
+     * Computes the patch that turns one encoded spec into another.
+     *
+     * @param base   The spec the app holds.
+     * @param target The spec to send.
+     * @return The patch, {@code null} if it isn't less than half the size of the target, if the
+     *      target leaves a value of the base unset, or if either spec is malformed.
+     */
+    @Nullable
+    public static SpecPatch between(byte[] base, byte[] target) {
+        MergedSpec from = read(base);
+        MergedSpec to = read(target);
+        if (from == null || to == null) {
+            return null;
+        }
+
+        // Values, the app can't be told to go back to its defaults
+        int addedFlags = 0;
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            int flag = 1 << i;
+            boolean inBase = (from.flags & flag) != 0;
+            boolean inTarget = (to.flags & flag) != 0;
+            if (inBase && !inTarget) {
+                return null;
+            }
+            if (inTarget && (!inBase || from.values[i] != to.values[i])) {
+                addedFlags |= flag;
+            }
+        }
+
+        List<Element> removedKeylines = new ArrayList<Element>();
+        List<Element> addedKeylines = new ArrayList<Element>();
+        diff(from.keylines, to.keylines, removedKeylines, addedKeylines);
+
+        List<Element> removedSpacings = new ArrayList<Element>();
+        List<Element> addedSpacings = new ArrayList<Element>();
+        diff(from.spacings, to.spacings, removedSpacings, addedSpacings);
+
+        SpecPatch patch = new SpecPatch(
+                MergedSpec.encode(0, to.values, removedKeylines, removedSpacings),
+                MergedSpec.encode(addedFlags, to.values, addedKeylines, addedSpacings)
+        );
+        return patch.size() < target.length / 2 ? patch : null;
+    }
+
+    int size() {
+        return removed.length + added.length;
+    }
+
+    private SpecPatch(byte[] removed, byte[] added) {
+        this.removed = removed;
+        this.added = added;
+    }
+
+    private static void diff(List<Element> base, List<Element> target,
+                             List<Element> removed, List<Element> added) {
+        Map<Element, Integer> remaining = new HashMap<Element, Integer>(base.size() * 2);
+        for (int i = 0, n = base.size(); i < n; i++) {
+            Element element = base.get(i);
+            Integer count = remaining.get(element);
+            remaining.put(element, count == null ? 1 : count + 1);
+        }
+
+        for (int i = 0, n = target.size(); i < n; i++) {
+            Element element = target.get(i);
+            Integer count = remaining.get(element);
+            if (count != null && count > 0) {
+                remaining.put(element, count - 1);
+            } else {
+                added.add(element);
+            }
+        }
+
+        for (int i = 0, n = base.size(); i < n; i++) {
+            Element element = base.get(i);
+            Integer count = remaining.get(element);
+            if (count != null && count > 0) {
+                remaining.put(element, count - 1);
+                removed.add(element);
+            }
+        }
+    }
+
+    @Nullable
+    private static MergedSpec read(byte[] bytes) {
+        MergedSpec spec = new MergedSpec();
+        try {
+            spec.merge(bytes);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return spec;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * A {@link Spec} resolved for a viewport, in struct-of-arrays form. All primitives live in a
+ * single float array, grouped into batches that are drawn in ascending order. Spacings are
+ * rectangles, the baseline grid and keylines are lines. See {@link SpecElement} for the layout
+ * of a primitive.
+ *
+ * <p>Instances are created by {@link SpecCompiler} and must be treated as immutable.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class CompiledSpec {
+
+    // Batches, in drawing order
+    static final int BATCH_SPACINGS = 0;
+    static final int BATCH_BASELINE_GRID = 1;
+    static final int BATCH_KEYLINES = 2;
+    static final int BATCH_COUNT = 3;
+
+    // Values per primitive
+    static final int PRIMITIVE_SIZE = 4;
+
+    // Viewport
+    final float density;
+    final int width;
+    final int height;
+
+    // Geometry
+    final float[] primitives;
+    final int[] batchOffsets;
+    final int[] batchLengths;
+    final int[] batchColors;
+
+    CompiledSpec(float density, int width, int height, float[] primitives,
+                 int[] batchOffsets, int[] batchLengths, int[] batchColors) {
+        this.density = density;
+        this.width = width;
+        this.height = height;
+        this.primitives = primitives;
+        this.batchOffsets = batchOffsets;
+        this.batchLengths = batchLengths;
+        this.batchColors = batchColors;
+    }
+
+    /**
+     * @return {@code true} if this was compiled for the given viewport.
+     */
+    boolean isCompiledFor(float density, int width, int height) {
+        return this.density == density && this.width == width && this.height == height;
+    }
+
+    /**
+     * @return The number of primitives in a batch.
+     */
+    int primitiveCount(int batch) {
+        return batchLengths[batch] / PRIMITIVE_SIZE;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ * Modifications (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
+ * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
+ */
+class Grid implements SpecElement {
+
+    // Constants
+    static final int DEFAULT_BASELINE_GRID_CELL_SIZE = 8;
+    static final float MIN_BASELINE_GRID_CELL_SIZE = 1;
+    private static final int MAX_LINES_PER_AXIS = 4096;
+
+    // Attributes
+    private final float cellSize;
+
+    Grid() {
+        this(DEFAULT_BASELINE_GRID_CELL_SIZE);
+    }
+
+    Grid(float cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    float cellSize() {
+        return cellSize;
+    }
+
+    /**
+     * A cell size of zero or less turns the grid off, positive ones below
+     * {@link #MIN_BASELINE_GRID_CELL_SIZE} would draw a line on every pixel.
+     */
+    static boolean isValidCellSize(float cellSize) {
+        return cellSize <= 0 || cellSize >= MIN_BASELINE_GRID_CELL_SIZE;
+    }
+
+    @Override
+    public int primitiveCount(float density, int width, int height) {
+        float cellSizePx = density * this.cellSize;
+        return lineCount(cellSizePx, width) + lineCount(cellSizePx, height);
+    }
+
+    @Override
+    public int resolve(float[] out, int offset, float density, int width, int height) {
+        float cellSizePx = density * this.cellSize;
+        for (int i = 1, n = lineCount(cellSizePx, width); i <= n; i++) {
+            float x = i * cellSizePx;
+            out[offset++] = x;
+            out[offset++] = 0;
+            out[offset++] = x;
+            out[offset++] = height;
+        }
+        for (int i = 1, n = lineCount(cellSizePx, height); i <= n; i++) {
+            float y = i * cellSizePx;
+            out[offset++] = 0;
+            out[offset++] = y;
+            out[offset++] = width;
+            out[offset++] = y;
+        }
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Grid)) {
+            return false;
+        }
+
+        if (o == this) {
+            return true;
+        }
+
+        return Float.compare(this.cellSize, ((Grid) o).cellSize) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Float.floatToIntBits(cellSize);
+    }
+
+    /**
+     * Lines at every multiple of the cell size strictly inside {@code [0, extent)}, counted
+     * rather than stepped to so that tiny cells can't stall, and capped to bound the allocation.
+     */
+    private static int lineCount(float cellSizePx, int extent) {
+        if (!(cellSizePx > 0)) {
+            return 0;
+        }
+        double count = Math.ceil(extent / (double) cellSizePx) - 1;
+        return (int) Math.max(0, Math.min(count, MAX_LINES_PER_AXIS));
+    }
+
+}
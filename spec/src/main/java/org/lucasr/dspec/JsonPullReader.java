@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * A single-pass JSON pull parser over an in-memory payload, modelled after
+ * {@link android.util.JsonReader}. Unlike the platform reader it works on a plain JVM, matches
+ * names and enum-like strings without allocating and reports line and column positions.
+ *
+ * <p>Line and column numbers are only computed when an error is reported.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+final class JsonPullReader {
+
+    // Tokens
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int BOOLEAN = 8;
+    static final int NULL = 9;
+    static final int END_DOCUMENT = 10;
+
+    private static final int NONE = 0;
+    private static final String[] NO_NAMES = new String[0];
+
+    // Scopes
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    // Attributes
+    private final String json;
+    private final int length;
+    private int pos;
+    private int peeked = NONE;
+    private int tokenStart;
+
+    private int[] stack = new int[16];
+    private int stackSize;
+
+    JsonPullReader(String json) {
+        this.json = json;
+        this.length = json.length();
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    int peek() throws SpecParseException {
+        if (peeked == NONE) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    boolean hasNext() throws SpecParseException {
+        int token = peek();
+        return token != END_OBJECT && token != END_ARRAY && token != END_DOCUMENT;
+    }
+
+    void beginObject() throws SpecParseException {
+        expect(BEGIN_OBJECT, "Expected an object");
+        push(EMPTY_OBJECT);
+        peeked = NONE;
+    }
+
+    void endObject() throws SpecParseException {
+        expect(END_OBJECT, "Expected end of object");
+        stackSize--;
+        peeked = NONE;
+    }
+
+    void beginArray() throws SpecParseException {
+        expect(BEGIN_ARRAY, "Expected an array");
+        push(EMPTY_ARRAY);
+        peeked = NONE;
+    }
+
+    void endArray() throws SpecParseException {
+        expect(END_ARRAY, "Expected end of array");
+        stackSize--;
+        peeked = NONE;
+    }
+
+    void endDocument() throws SpecParseException {
+        expect(END_DOCUMENT, "Unexpected content after the document");
+    }
+
+    /**
+     * Consumes the next name and returns its index in {@code names}.
+     *
+     * @return The index of the matching name, -1 if there is no match.
+     */
+    int nextName(String[] names) throws SpecParseException {
+        expect(NAME, "Expected a name");
+        peeked = NONE;
+        return matchString(names, false);
+    }
+
+    String nextString() throws SpecParseException {
+        expect(STRING, "Expected a string");
+        peeked = NONE;
+        return readString();
+    }
+
+    /**
+     * Consumes the next string and returns its index in {@code values}, ignoring case.
+     *
+     * @return The index of the matching value, -1 if there is no match.
+     */
+    int nextString(String[] values) throws SpecParseException {
+        expect(STRING, "Expected a string");
+        peeked = NONE;
+        return matchString(values, true);
+    }
+
+    double nextDouble() throws SpecParseException {
+        expect(NUMBER, "Expected a number");
+        peeked = NONE;
+
+        int start = pos;
+        boolean integral = true;
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E' || c == '+') {
+                integral = false;
+            } else if (c != '-' && (c < '0' || c > '9')) {
+                break;
+            }
+            pos++;
+        }
+
+        // Fast path for the common case, integers that fit in a long
+        int digits = pos - start;
+        if (integral && digits > 0 && digits < 18) {
+            boolean negative = json.charAt(start) == '-';
+            long value = 0;
+            for (int i = negative ? start + 1 : start; i < pos; i++) {
+                char c = json.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw error("Malformed number", start);
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (negative && digits == 1) {
+                throw error("Malformed number", start);
+            }
+            return negative ? -value : value;
+        }
+
+        try {
+            return Double.parseDouble(json.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("Malformed number", start);
+        }
+    }
+
+    long nextLong() throws SpecParseException {
+        int start = position();
+        double value = nextDouble();
+        if (value != Math.rint(value) || Math.abs(value) > (1L << 53)) {
+            throw error("Expected an integer", start);
+        }
+        return (long) value;
+    }
+
+    void skipValue() throws SpecParseException {
+        int token = peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName(NO_NAMES);
+                    skipValue();
+                }
+                endObject();
+                break;
+
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+
+            case STRING:
+                peeked = NONE;
+                skipString();
+                break;
+
+            case NUMBER:
+                nextDouble();
+                break;
+
+            case BOOLEAN:
+            case NULL:
+                peeked = NONE;
+                break;
+
+            default:
+                throw error("Expected a value", tokenStart);
+        }
+    }
+
+    /**
+     * @return The offset of the next token in the payload.
+     */
+    int position() throws SpecParseException {
+        peek();
+        return tokenStart;
+    }
+
+    SpecParseException error(String message, int position) {
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0, n = Math.min(position, length); i < n; i++) {
+            if (json.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new SpecParseException(message, line, position - lineStart + 1);
+    }
+
+    private void expect(int token, String message) throws SpecParseException {
+        if (peek() != token) {
+            throw error(message, tokenStart);
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private int doPeek() throws SpecParseException {
+        final int scope = stack[stackSize - 1];
+        int c;
+
+        if (scope == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == NONEMPTY_ARRAY) {
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return END_ARRAY;
+            } else if (c != ',') {
+                throw error("Unterminated array", tokenStart);
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            if (scope == NONEMPTY_OBJECT) {
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return END_OBJECT;
+                } else if (c != ',') {
+                    throw error("Unterminated object", tokenStart);
+                }
+            }
+            c = nextNonWhitespace();
+            if (c == '"') {
+                return NAME;
+            } else if (c == '}' && scope == EMPTY_OBJECT) {
+                return END_OBJECT;
+            }
+            throw error("Expected a name", tokenStart);
+        } else if (scope == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw error("Expected ':'", tokenStart);
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespace() == -1) {
+                return END_DOCUMENT;
+            }
+            throw error("Unexpected content after the document", tokenStart);
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                throw error("Unexpected end of input", tokenStart);
+
+            case ']':
+                if (scope == EMPTY_ARRAY) {
+                    return END_ARRAY;
+                }
+                throw error("Expected a value", tokenStart);
+
+            case '{':
+                return BEGIN_OBJECT;
+
+            case '[':
+                return BEGIN_ARRAY;
+
+            case '"':
+                return STRING;
+
+            case 't':
+                return literal("true", BOOLEAN);
+
+            case 'f':
+                return literal("false", BOOLEAN);
+
+            case 'n':
+                return literal("null", NULL);
+
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--; // Numbers are read from their first character
+                    return NUMBER;
+                }
+                throw error("Expected a value", tokenStart);
+        }
+    }
+
+    private int literal(String literal, int token) throws SpecParseException {
+        int start = pos - 1;
+        if (!json.startsWith(literal, start)) {
+            throw error("Expected a value", start);
+        }
+        pos = start + literal.length();
+        return token;
+    }
+
+    /**
+     * Consumes whitespace and returns the next character, or -1 at the end of the input.
+     */
+    private int nextNonWhitespace() {
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                tokenStart = pos - 1;
+                return c;
+            }
+        }
+        tokenStart = length;
+        return -1;
+    }
+
+    /**
+     * Returns the index of the end quote of the string starting at {@link #pos}.
+     *
+     * @return The index of the closing quote, negated minus one if the string has escapes.
+     */
+    private int findStringEnd() throws SpecParseException {
+        boolean escaped = false;
+        for (int i = pos; i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                return escaped ? -i - 1 : i;
+            } else if (c == '\\') {
+                escaped = true;
+                i++;
+            }
+        }
+        throw error("Unterminated string", tokenStart);
+    }
+
+    private void skipString() throws SpecParseException {
+        int end = findStringEnd();
+        pos = (end >= 0 ? end : -end - 1) + 1;
+    }
+
+    private int matchString(String[] candidates, boolean ignoreCase) throws SpecParseException {
+        int end = findStringEnd();
+        if (end < 0) {
+            String value = readString();
+            for (int i = 0; i < candidates.length; i++) {
+                if (ignoreCase ? candidates[i].equalsIgnoreCase(value)
+                        : candidates[i].equals(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int start = pos;
+        int valueLength = end - start;
+        pos = end + 1;
+        for (int i = 0; i < candidates.length; i++) {
+            String candidate = candidates[i];
+            if (candidate.length() == valueLength
+                    && json.regionMatches(ignoreCase, start, candidate, 0, valueLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String readString() throws SpecParseException {
+        int end = findStringEnd();
+        if (end >= 0) {
+            String value = json.substring(pos, end);
+            pos = end + 1;
+            return value;
+        }
+
+        end = -end - 1;
+        StringBuilder builder = new StringBuilder(end - pos);
+        while (pos < end) {
+            char c = json.charAt(pos++);
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > end) {
+                        throw error("Malformed escape sequence", pos - 2);
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Malformed escape sequence", pos - 2);
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    builder.append(escaped); // '"', '\\' and '/'
+                    break;
+            }
+        }
+        pos = end + 1;
+        return builder.toString();
+    }
+
+}
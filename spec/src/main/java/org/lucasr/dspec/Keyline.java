@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ * Modifications (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
+ * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
+ */
+class Keyline implements SpecElement {
+
+    // Constants
+    static final float KEYLINE_STROKE_WIDTH_DIP = 1.1f;
+
+    private final float position;
+    private final From from;
+    private final String label;
+
+    Keyline(float position, From from, String label) {
+        this.position = position;
+        this.from = from;
+        this.label = label;
+    }
+
+    float position() {
+        return position;
+    }
+
+    From from() {
+        return from;
+    }
+
+    String label() {
+        return label;
+    }
+
+    @Override
+    public int primitiveCount(float density, int width, int height) {
+        return 1;
+    }
+
+    @Override
+    public int resolve(float[] out, int offset, float density, int width, int height) {
+        final float positionPx = getPositionPx(density, width, height);
+        if (isVertical()) {
+            out[offset++] = positionPx;
+            out[offset++] = 0;
+            out[offset++] = positionPx;
+            out[offset++] = height;
+        } else {
+            out[offset++] = 0;
+            out[offset++] = positionPx;
+            out[offset++] = width;
+            out[offset++] = positionPx;
+        }
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Keyline)) {
+            return false;
+        }
+
+        if (o == this) {
+            return true;
+        }
+
+        final Keyline other = (Keyline) o;
+        return Float.compare(this.position, other.position) == 0 && this.from == other.from
+                && (this.label == null ? other.label == null : this.label.equals(other.label));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(position);
+        result = 31 * result + from.hashCode();
+        result = 31 * result + (label != null ? label.hashCode() : 0);
+        return result;
+    }
+
+    private float getPositionPx(float density, int width, int height) {
+        switch (from) {
+            case LEFT:
+            case TOP:
+                return position * density;
+
+            case RIGHT:
+                return width - (position * density);
+
+            case BOTTOM:
+                return height - (position * density);
+
+            case VERTICAL_CENTER:
+                return (height / 2) + (position * density);
+
+            case HORIZONTAL_CENTER:
+                return (width / 2) + (position * density);
+
+            default:
+                throw new IllegalStateException("Invalid keyline offset.");
+        }
+    }
+
+    private boolean isVertical() {
+        return from == From.LEFT || from == From.RIGHT || from == From.HORIZONTAL_CENTER;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ * Modifications (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+/**
+ * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
+ * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
+ */
+class Spacing implements SpecElement {
+
+    // Attributes
+    private final float offset;
+    private final float size;
+    private final From from;
+
+    Spacing(float offset, float size, From from) {
+        this.offset = offset;
+        this.size = size;
+        this.from = from;
+    }
+
+    float offset() {
+        return offset;
+    }
+
+    float size() {
+        return size;
+    }
+
+    From from() {
+        return from;
+    }
+
+    @Override
+    public int primitiveCount(float density, int width, int height) {
+        return 1;
+    }
+
+    @Override
+    public int resolve(float[] out, int offset, float density, int width, int height) {
+        final float position1Px = getStartPx(density, width, height);
+        final float position2Px = position1Px + (size * density);
+        if (isVertical()) {
+            out[offset++] = position1Px;
+            out[offset++] = 0;
+            out[offset++] = position2Px;
+            out[offset++] = height;
+        } else {
+            out[offset++] = 0;
+            out[offset++] = position1Px;
+            out[offset++] = width;
+            out[offset++] = position2Px;
+        }
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Spacing)) {
+            return false;
+        }
+
+        if (o == this) {
+            return true;
+        }
+
+        final Spacing other = (Spacing) o;
+        return Float.compare(this.offset, other.offset) == 0
+                && Float.compare(this.size, other.size) == 0 && this.from == other.from;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Float.floatToIntBits(offset);
+        result = 31 * result + Float.floatToIntBits(size);
+        result = 31 * result + from.hashCode();
+        return result;
+    }
+
+    private float getStartPx(float density, int width, int height) {
+        switch (from) {
+            case LEFT:
+            case TOP:
+                return offset * density;
+
+            case RIGHT:
+                return width - ((offset + size) * density);
+
+            case BOTTOM:
+                return height - ((offset + size) * density);
+
+            case VERTICAL_CENTER:
+                return (height / 2) + (offset * density);
+
+            case HORIZONTAL_CENTER:
+                return (width / 2) + (offset * density);
+
+            default:
+                throw new IllegalStateException("Invalid spacing offset.");
+        }
+    }
+
+    private boolean isVertical() {
+        return from == From.LEFT || from == From.RIGHT || from == From.HORIZONTAL_CENTER;
+    }
+
+}
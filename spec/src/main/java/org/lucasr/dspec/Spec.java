@@ -23,10 +23,13 @@ import android.support.annotation.Nullable;
 import java.util.List;
 
 /**
+ * A parsed spec. Public so that the app can hold on to specs it has already parsed, everything
+ * else stays within the package.
+ *
  * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
  * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
  */
-class Spec {
+public class Spec {
 
     // Baseline Grid
     private final Grid baselineGrid;
@@ -40,6 +43,10 @@ class Spec {
     @Nullable private final List<Spacing> spacings;
     @ColorInt private final int spacingColor;
 
+    // Latest compiled form, kept with the spec so that a cached spec isn't compiled again. Compiled
+    // specs are immutable, the volatile field publishes them safely to any thread.
+    private volatile CompiledSpec compiledSpec;
+
     static Builder builder() {
         return new Builder();
     }
@@ -68,6 +75,53 @@ class Spec {
         return spacingColor;
     }
 
+    /**
+     * Compiles the spec for the given viewport, unless it is already compiled for it. Safe to call
+     * from several threads, racing callers may each compile the spec.
+     */
+    CompiledSpec compile(float density, int width, int height) {
+        CompiledSpec compiled = compiledSpec; // Read once, another thread may replace it
+        if (compiled == null || !compiled.isCompiledFor(density, width, height)) {
+            compiled = SpecCompiler.compile(this, density, width, height);
+            compiledSpec = compiled;
+        }
+        return compiled;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Spec)) {
+            return false;
+        }
+
+        if (o == this) {
+            return true;
+        }
+
+        final Spec other = (Spec) o;
+        return this.baselineGridColor == other.baselineGridColor
+                && this.keylineColor == other.keylineColor
+                && this.spacingColor == other.spacingColor
+                && equal(this.baselineGrid, other.baselineGrid)
+                && equal(this.keylines, other.keylines)
+                && equal(this.spacings, other.spacings);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = baselineGrid != null ? baselineGrid.hashCode() : 0;
+        result = 31 * result + baselineGridColor;
+        result = 31 * result + (keylines != null ? keylines.hashCode() : 0);
+        result = 31 * result + keylineColor;
+        result = 31 * result + (spacings != null ? spacings.hashCode() : 0);
+        result = 31 * result + spacingColor;
+        return result;
+    }
+
+    private static boolean equal(@Nullable Object a, @Nullable Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     private Spec(Grid baselineGrid, int baselineGridColor,
                  @Nullable List<Keyline> keylines, int keylineColor,
                  @Nullable List<Spacing> spacings, int spacingColor) {
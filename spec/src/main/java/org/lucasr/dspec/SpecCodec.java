@@ -0,0 +1,400 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link Spec}, used to send specs from the SDK to the app without
+ * going through JSON. All multi-byte values are big-endian.
+ *
+ * <pre>
+ * magic        2 bytes, 'K' 'L'
+ * version      1 byte
+ * flags        1 byte, which of the following optional values are present
+ * cellSize     float   (FLAG_BASELINE_GRID_CELL_SIZE)
+ * gridColor    int     (FLAG_BASELINE_GRID_COLOR)
+ * keylineColor int     (FLAG_KEYLINES_COLOR)
+ * spacingColor int     (FLAG_SPACINGS_COLOR)
+ * labels       varint count, then per label: varint length, UTF-8 bytes
+ * keylines     varint count, then per keyline: float offset, byte from, varint label + 1
+ * spacings     varint count, then per spacing: float offset, float size, byte from
+ * </pre>
+ *
+ * <p>{@code from} is the ordinal of {@link From}, a label index of {@code 0} means no label.
+ * The SDK encodes with {@code com.mobsandgeeks.keylines.spec.SpecEncoder}, from the same module,
+ * both must agree on {@link #VERSION}.</p>
+ *
+ * <p>Large specs reach the app through a shared, read-only mapping and are decoded in place with
+ * {@link #decode(ByteBuffer)}.</p>
+ *
+ * <p>A payload can hold several encoded specs back to back, they are merged in order. Elements
+ * accumulate and values from later specs override earlier ones, so specs precompiled at build
+ * time are merged by concatenating them.</p>
+ *
+ * <p>A patch is a pair of encoded specs, see {@link #patch(Spec, byte[], byte[])}.</p>
+ *
+ * @author Ragunath Jawahar
+ */
+public final class SpecCodec {
+
+    // Constants
+    static final int MAGIC = 0x4B4C; // "KL"
+    static final int VERSION = 1;
+
+    static final int FLAG_BASELINE_GRID_CELL_SIZE = 1;
+    static final int FLAG_BASELINE_GRID_COLOR = 1 << 1;
+    static final int FLAG_KEYLINES_COLOR = 1 << 2;
+    static final int FLAG_SPACINGS_COLOR = 1 << 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final From[] FROM_VALUES = From.values();
+
+    // Smallest encoded sizes, used to reject counts the payload can't possibly hold
+    private static final int MIN_LABEL_SIZE = 1;
+    private static final int MIN_KEYLINE_SIZE = 6;
+    private static final int MIN_SPACING_SIZE = 9;
+
+    /**
+     * Creates a {@link Spec} from its binary encoding.
+     *
+     * @param bytes The encoded spec.
+     * @return A {@link Spec} object.
+     * @throws SpecParseException If the payload is malformed, truncated or of an unknown version.
+     */
+    public static Spec decode(byte[] bytes) throws SpecParseException {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Creates a {@link Spec} from its binary encoding, reading the buffer from its position up to
+     * its limit. Direct and memory-mapped buffers are read in place, only labels are copied out.
+     *
+     * @param buffer The encoded spec.
+     * @return A {@link Spec} object.
+     * @throws SpecParseException If the payload is malformed, truncated or of an unknown version.
+     */
+    public static Spec decode(ByteBuffer buffer) throws SpecParseException {
+        try {
+            return decodeSegments(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new SpecParseException("Truncated spec", buffer.position());
+        }
+    }
+
+    /**
+     * Applies a patch to a spec. Only the patch is decoded, the base spec's elements are reused.
+     *
+     * @param base    The spec the patch was computed against.
+     * @param removed Elements to remove, the values of this spec are ignored.
+     * @param added   Elements to add, the values present in this spec override the base's.
+     * @return The patched {@link Spec}.
+     * @throws SpecParseException If the patch is malformed, or removes elements that the base
+     *      spec doesn't have.
+     */
+    public static Spec patch(Spec base, byte[] removed, byte[] added) throws SpecParseException {
+        Spec.Builder builder = Spec.builder()
+                .baselineGrid(base.baselineGrid())
+                .baselineGridColor(base.baselineGridColor())
+                .keylinesColor(base.keylineColor())
+                .spacingsColor(base.spacingColor());
+
+        List<Keyline> removedKeylines = new ArrayList<>();
+        List<Spacing> removedSpacings = new ArrayList<>();
+        List<Keyline> addedKeylines = new ArrayList<>();
+        List<Spacing> addedSpacings = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(removed);
+        try {
+            decodeSegment(buffer, Spec.builder(), removedKeylines, removedSpacings);
+            buffer = ByteBuffer.wrap(added);
+            decodeSegment(buffer, builder, addedKeylines, addedSpacings);
+        } catch (BufferUnderflowException e) {
+            throw new SpecParseException("Truncated patch", buffer.position());
+        }
+
+        List<Keyline> keylines = patch(base.keylines(), removedKeylines, addedKeylines);
+        if (!keylines.isEmpty()) {
+            builder.keylines(keylines);
+        }
+        List<Spacing> spacings = patch(base.spacings(), removedSpacings, addedSpacings);
+        if (!spacings.isEmpty()) {
+            builder.spacings(spacings);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encodes a {@link Spec}, every optional value is written.
+     */
+    static byte[] encode(Spec spec) {
+        List<Keyline> keylines = spec.keylines();
+        List<Spacing> spacings = spec.spacings();
+        int keylineCount = keylines != null ? keylines.size() : 0;
+        int spacingCount = spacings != null ? spacings.size() : 0;
+
+        // Intern labels
+        List<String> labels = new ArrayList<>();
+        Map<String, Integer> labelIndices = new HashMap<>();
+        for (int i = 0; i < keylineCount; i++) {
+            String label = keylines.get(i).label();
+            if (label != null && !labelIndices.containsKey(label)) {
+                labelIndices.put(label, labels.size());
+                labels.add(label);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                16 + keylineCount * MIN_KEYLINE_SIZE + spacingCount * MIN_SPACING_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(FLAG_BASELINE_GRID_CELL_SIZE | FLAG_BASELINE_GRID_COLOR
+                    | FLAG_KEYLINES_COLOR | FLAG_SPACINGS_COLOR);
+            out.writeFloat(spec.baselineGrid().cellSize());
+            out.writeInt(spec.baselineGridColor());
+            out.writeInt(spec.keylineColor());
+            out.writeInt(spec.spacingColor());
+
+            writeVarint(out, labels.size());
+            for (int i = 0, n = labels.size(); i < n; i++) {
+                byte[] label = labels.get(i).getBytes(UTF_8);
+                writeVarint(out, label.length);
+                out.write(label);
+            }
+
+            writeVarint(out, keylineCount);
+            for (int i = 0; i < keylineCount; i++) {
+                Keyline keyline = keylines.get(i);
+                out.writeFloat(keyline.position());
+                out.writeByte(keyline.from().ordinal());
+                writeVarint(out, keyline.label() != null
+                        ? labelIndices.get(keyline.label()) + 1 : 0);
+            }
+
+            writeVarint(out, spacingCount);
+            for (int i = 0; i < spacingCount; i++) {
+                Spacing spacing = spacings.get(i);
+                out.writeFloat(spacing.offset());
+                out.writeFloat(spacing.size());
+                out.writeByte(spacing.from().ordinal());
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e); // Can't happen, the stream is in memory
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Spec decodeSegments(ByteBuffer buffer) throws SpecParseException {
+        Spec.Builder builder = Spec.builder();
+        List<Keyline> keylines = new ArrayList<>();
+        List<Spacing> spacings = new ArrayList<>();
+
+        do {
+            decodeSegment(buffer, builder, keylines, spacings);
+        } while (buffer.hasRemaining());
+
+        if (!keylines.isEmpty()) {
+            builder.keylines(keylines);
+        }
+        if (!spacings.isEmpty()) {
+            builder.spacings(spacings);
+        }
+        return builder.build();
+    }
+
+    private static void decodeSegment(ByteBuffer buffer, Spec.Builder builder,
+            List<Keyline> keylines, List<Spacing> spacings) throws SpecParseException {
+        int start = buffer.position();
+        if ((buffer.getShort() & 0xFFFF) != MAGIC) {
+            throw new SpecParseException("Not a spec", start);
+        }
+        int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new SpecParseException("Unsupported spec version " + version, start + 2);
+        }
+
+        int flags = buffer.get() & 0xFF;
+        if ((flags & FLAG_BASELINE_GRID_CELL_SIZE) != 0) {
+            int cellSizePosition = buffer.position();
+            float cellSize = buffer.getFloat();
+            if (!Grid.isValidCellSize(cellSize)) {
+                throw new SpecParseException("Invalid baseline grid cell size " + cellSize,
+                        cellSizePosition);
+            }
+            builder.baselineGrid(new Grid(cellSize));
+        }
+        if ((flags & FLAG_BASELINE_GRID_COLOR) != 0) {
+            builder.baselineGridColor(buffer.getInt());
+        }
+        if ((flags & FLAG_KEYLINES_COLOR) != 0) {
+            builder.keylinesColor(buffer.getInt());
+        }
+        if ((flags & FLAG_SPACINGS_COLOR) != 0) {
+            builder.spacingsColor(buffer.getInt());
+        }
+
+        // Labels
+        int labelCount = readCount(buffer, MIN_LABEL_SIZE);
+        String[] labels = new String[labelCount];
+        for (int i = 0; i < labelCount; i++) {
+            labels[i] = readString(buffer, readCount(buffer, 1));
+        }
+
+        // Keylines
+        int keylineCount = readCount(buffer, MIN_KEYLINE_SIZE);
+        for (int i = 0; i < keylineCount; i++) {
+            float position = buffer.getFloat();
+            From from = readFrom(buffer);
+            int labelPosition = buffer.position();
+            int label = readVarint(buffer);
+            if (label > labelCount) {
+                throw new SpecParseException("Invalid label index " + label, labelPosition);
+            }
+            keylines.add(new Keyline(position, from, label != 0 ? labels[label - 1] : null));
+        }
+
+        // Spacings
+        int spacingCount = readCount(buffer, MIN_SPACING_SIZE);
+        for (int i = 0; i < spacingCount; i++) {
+            float offset = buffer.getFloat();
+            float size = buffer.getFloat();
+            spacings.add(new Spacing(offset, size, readFrom(buffer)));
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Removes elements one-to-one, like {@link SpecDiff} matches duplicates, then appends.
+     */
+    private static <T extends SpecElement> List<T> patch(@Nullable List<T> elements,
+            List<T> removed, List<T> added) throws SpecParseException {
+        int count = elements != null ? elements.size() : 0;
+        if (removed.size() > count) {
+            throw new SpecParseException("Patch doesn't apply, removes " + removed.size()
+                    + " of " + count + " elements", 0);
+        }
+        List<T> patched = new ArrayList<>(Math.max(0, count - removed.size() + added.size()));
+        if (removed.isEmpty()) {
+            if (elements != null) {
+                patched.addAll(elements);
+            }
+            patched.addAll(added);
+            return patched;
+        }
+
+        Map<T, Integer> remaining = new HashMap<>(removed.size() * 2);
+        for (int i = 0, n = removed.size(); i < n; i++) {
+            T element = removed.get(i);
+            Integer remove = remaining.get(element);
+            remaining.put(element, remove == null ? 1 : remove + 1);
+        }
+
+        int unmatched = removed.size();
+        for (int i = 0; i < count; i++) {
+            T element = elements.get(i);
+            Integer remove = unmatched > 0 ? remaining.get(element) : null;
+            if (remove != null && remove > 0) {
+                remaining.put(element, remove - 1);
+                unmatched--;
+            } else {
+                patched.add(element);
+            }
+        }
+        if (unmatched > 0) {
+            throw new SpecParseException("Patch doesn't apply, " + unmatched
+                    + " removed elements not found", 0);
+        }
+
+        patched.addAll(added);
+        return patched;
+    }
+
+    private static From readFrom(ByteBuffer buffer) throws SpecParseException {
+        int ordinal = buffer.get() & 0xFF;
+        if (ordinal >= FROM_VALUES.length) {
+            throw new SpecParseException("Invalid 'from' " + ordinal, buffer.position() - 1);
+        }
+        return FROM_VALUES[ordinal];
+    }
+
+    /**
+     * Reads a count and checks that the rest of the payload can hold that many items, so that a
+     * corrupt count doesn't turn into a huge allocation.
+     */
+    private static int readCount(ByteBuffer buffer, int minItemSize) throws SpecParseException {
+        int position = buffer.position();
+        int count = readVarint(buffer);
+        if (count > buffer.remaining() / minItemSize) {
+            throw new SpecParseException("Invalid count " + count, position);
+        }
+        return count;
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws SpecParseException {
+        int position = buffer.position();
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new SpecParseException("Malformed varint", position);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private SpecCodec() {
+        throw new AssertionError("No instances.");
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.support.annotation.Nullable;
+
+import java.util.List;
+
+import static org.lucasr.dspec.CompiledSpec.BATCH_BASELINE_GRID;
+import static org.lucasr.dspec.CompiledSpec.BATCH_COUNT;
+import static org.lucasr.dspec.CompiledSpec.BATCH_KEYLINES;
+import static org.lucasr.dspec.CompiledSpec.BATCH_SPACINGS;
+import static org.lucasr.dspec.CompiledSpec.PRIMITIVE_SIZE;
+
+/**
+ * Resolves a {@link Spec} into a {@link CompiledSpec} for a given viewport. This is where the
+ * {@link From} anchors and the density are applied, drawing the result doesn't need to look at
+ * the spec's elements anymore.
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecCompiler {
+
+    /**
+     * Compiles a spec.
+     *
+     * @param spec    The spec to compile.
+     * @param density Density from the system's {@link android.util.DisplayMetrics}.
+     * @param width   Width of the viewport.
+     * @param height  Height of the viewport.
+     * @return A {@link CompiledSpec}.
+     */
+    static CompiledSpec compile(Spec spec, float density, int width, int height) {
+        final Grid baselineGrid = spec.baselineGrid();
+
+        int spacingCount = primitiveCount(spec.spacings(), density, width, height);
+        int gridCount = baselineGrid != null
+                ? baselineGrid.primitiveCount(density, width, height) : 0;
+        int keylineCount = primitiveCount(spec.keylines(), density, width, height);
+
+        float[] primitives = new float[(spacingCount + gridCount + keylineCount) * PRIMITIVE_SIZE];
+        int[] batchOffsets = new int[BATCH_COUNT];
+        int[] batchLengths = new int[BATCH_COUNT];
+        int[] batchColors = new int[BATCH_COUNT];
+
+        int offset = 0;
+
+        batchOffsets[BATCH_SPACINGS] = offset;
+        offset = resolve(spec.spacings(), primitives, offset, density, width, height);
+        batchLengths[BATCH_SPACINGS] = offset - batchOffsets[BATCH_SPACINGS];
+        batchColors[BATCH_SPACINGS] = spec.spacingColor();
+
+        batchOffsets[BATCH_BASELINE_GRID] = offset;
+        if (baselineGrid != null) {
+            offset = baselineGrid.resolve(primitives, offset, density, width, height);
+        }
+        batchLengths[BATCH_BASELINE_GRID] = offset - batchOffsets[BATCH_BASELINE_GRID];
+        batchColors[BATCH_BASELINE_GRID] = spec.baselineGridColor();
+
+        batchOffsets[BATCH_KEYLINES] = offset;
+        offset = resolve(spec.keylines(), primitives, offset, density, width, height);
+        batchLengths[BATCH_KEYLINES] = offset - batchOffsets[BATCH_KEYLINES];
+        batchColors[BATCH_KEYLINES] = spec.keylineColor();
+
+        return new CompiledSpec(density, width, height, primitives,
+                batchOffsets, batchLengths, batchColors);
+    }
+
+    private static int primitiveCount(@Nullable List<? extends SpecElement> elements,
+                                      float density, int width, int height) {
+        if (elements == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (int i = 0, n = elements.size(); i < n; i++) {
+            count += elements.get(i).primitiveCount(density, width, height);
+        }
+        return count;
+    }
+
+    private static int resolve(@Nullable List<? extends SpecElement> elements, float[] out,
+                               int offset, float density, int width, int height) {
+        if (elements == null) {
+            return offset;
+        }
+
+        for (int i = 0, n = elements.size(); i < n; i++) {
+            offset = elements.get(i).resolve(out, offset, density, width, height);
+        }
+        return offset;
+    }
+
+    private SpecCompiler() {
+        throw new AssertionError("No instances.");
+    }
+
+}
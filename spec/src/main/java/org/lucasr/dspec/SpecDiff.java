@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural difference between two {@link Spec}s, expressed in terms of {@link SpecElement}s.
+ * Elements are compared by value, duplicates are matched one-to-one. A color change in a
+ * category reports all of its elements as removed and re-added, because each of them has to be
+ * repainted.
+ *
+ * @author Ragunath Jawahar
+ */
+final class SpecDiff {
+
+    private final List<SpecElement> added;
+    private final List<SpecElement> removed;
+    private final List<SpecElement> unchanged;
+
+    /**
+     * Computes the difference between two specs.
+     *
+     * @param oldSpec The spec currently in use, can be {@code null}.
+     * @param newSpec The incoming spec, can be {@code null}.
+     * @return A {@link SpecDiff}.
+     */
+    static SpecDiff between(@Nullable Spec oldSpec, @Nullable Spec newSpec) {
+        SpecDiff diff = new SpecDiff();
+
+        // Baseline grid
+        diff.diff(
+                oldSpec != null ? asList(oldSpec.baselineGrid()) : null,
+                oldSpec != null ? oldSpec.baselineGridColor() : 0,
+                newSpec != null ? asList(newSpec.baselineGrid()) : null,
+                newSpec != null ? newSpec.baselineGridColor() : 0
+        );
+
+        // Keylines
+        diff.diff(
+                oldSpec != null ? oldSpec.keylines() : null,
+                oldSpec != null ? oldSpec.keylineColor() : 0,
+                newSpec != null ? newSpec.keylines() : null,
+                newSpec != null ? newSpec.keylineColor() : 0
+        );
+
+        // Spacings
+        diff.diff(
+                oldSpec != null ? oldSpec.spacings() : null,
+                oldSpec != null ? oldSpec.spacingColor() : 0,
+                newSpec != null ? newSpec.spacings() : null,
+                newSpec != null ? newSpec.spacingColor() : 0
+        );
+
+        return diff;
+    }
+
+    List<SpecElement> added() {
+        return Collections.unmodifiableList(added);
+    }
+
+    List<SpecElement> removed() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    List<SpecElement> unchanged() {
+        return Collections.unmodifiableList(unchanged);
+    }
+
+    /**
+     * @return {@code true} if both specs render identically.
+     */
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    private SpecDiff() {
+        this.added = new ArrayList<>();
+        this.removed = new ArrayList<>();
+        this.unchanged = new ArrayList<>();
+    }
+
+    private void diff(@Nullable List<? extends SpecElement> oldElements, int oldColor,
+                      @Nullable List<? extends SpecElement> newElements, int newColor) {
+        if (oldElements == null || oldElements.isEmpty()) {
+            addAll(added, newElements);
+            return;
+        }
+
+        if (newElements == null || newElements.isEmpty()) {
+            addAll(removed, oldElements);
+            return;
+        }
+
+        if (oldColor != newColor) {
+            addAll(removed, oldElements);
+            addAll(added, newElements);
+            return;
+        }
+
+        // Count old elements, so that duplicates are matched one-to-one
+        Map<SpecElement, Integer> remaining = new HashMap<>(oldElements.size() * 2);
+        for (int i = 0, n = oldElements.size(); i < n; i++) {
+            SpecElement element = oldElements.get(i);
+            Integer count = remaining.get(element);
+            remaining.put(element, count == null ? 1 : count + 1);
+        }
+
+        for (int i = 0, n = newElements.size(); i < n; i++) {
+            SpecElement element = newElements.get(i);
+            Integer count = remaining.get(element);
+            if (count != null && count > 0) {
+                remaining.put(element, count - 1);
+                unchanged.add(element);
+            } else {
+                added.add(element);
+            }
+        }
+
+        for (int i = 0, n = oldElements.size(); i < n; i++) {
+            SpecElement element = oldElements.get(i);
+            Integer count = remaining.get(element);
+            if (count != null && count > 0) {
+                remaining.put(element, count - 1);
+                removed.add(element);
+            }
+        }
+    }
+
+    private static void addAll(List<SpecElement> out,
+                               @Nullable List<? extends SpecElement> elements) {
+        if (elements != null) {
+            out.addAll(elements);
+        }
+    }
+
+    @Nullable
+    private static List<Grid> asList(@Nullable Grid grid) {
+        return grid != null ? Collections.singletonList(grid) : null;
+    }
+
+}
@@ -16,24 +16,39 @@
 
 package org.lucasr.dspec;
 
-import android.graphics.Canvas;
-
 /**
  * Contract for elements that are rendered by {@link SpecDrawable}. Currently implemented by
  * {@link Grid}, {@link Keyline} and {@link Spacing}.
  *
+ * <p>Elements don't draw themselves, {@link SpecCompiler} resolves them into primitives of four
+ * floats each. Lines are stored as {@code x0, y0, x1, y1} and rectangles as
+ * {@code left, top, right, bottom}.</p>
+ *
  * @author Ragunath Jawahar
  */
 interface SpecElement {
 
     /**
-     * Draw the element on the canvas with the given paint and dimensions.
+     * Number of primitives this element resolves to with the given dimensions.
+     *
+     * @param density Density from the system's {@link android.util.DisplayMetrics}.
+     * @param width   Width of the {@link SpecDrawable}.
+     * @param height  Height of the {@link SpecDrawable}.
+     * @return The number of primitives.
+     */
+    int primitiveCount(float density, int width, int height);
+
+    /**
+     * Resolves the element into primitives, in pixels.
      *
-     * @param canvas  The {@link SpecDrawable}'s camvas.
+     * @param out     Receives the primitives, must have room for
+     *                {@link #primitiveCount(float, int, int)} primitives from {@code offset}.
+     * @param offset  Index of the first value to write.
      * @param density Density from the system's {@link android.util.DisplayMetrics}.
      * @param width   Width of the {@link SpecDrawable}.
      * @param height  Height of the {@link SpecDrawable}.
+     * @return The index following the last written value.
      */
-    void draw(Canvas canvas, float density, int width, int height);
+    int resolve(float[] out, int offset, float density, int width, int height);
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import java.util.Locale;
+
+/**
+ * Thrown when a spec can't be parsed. Carries the position in the payload where the problem
+ * was found, a line and column for JSON payloads or a byte offset for binary ones.
+ *
+ * @author Ragunath Jawahar
+ */
+public class SpecParseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+    private final int offset;
+
+    SpecParseException(String message, int line, int column) {
+        super(String.format(Locale.US, "%s at line %d, column %d", message, line, column));
+        this.line = line;
+        this.column = column;
+        this.offset = -1;
+    }
+
+    SpecParseException(String message, int offset) {
+        super(String.format(Locale.US, "%s at byte %d", message, offset));
+        this.line = -1;
+        this.column = -1;
+        this.offset = offset;
+    }
+
+    /**
+     * @return The 1-based line of the problem, {@code -1} for binary payloads.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return The 1-based column of the problem, {@code -1} for binary payloads.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return The 0-based byte offset of the problem, {@code -1} for JSON payloads.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+}
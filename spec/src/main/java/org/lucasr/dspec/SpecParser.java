@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2014 Lucas Rocha
+ * Modifications (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.lucasr.dspec.Grid.DEFAULT_BASELINE_GRID_CELL_SIZE;
+import static org.lucasr.dspec.JsonPullReader.NULL;
+import static org.lucasr.dspec.JsonPullReader.NUMBER;
+import static org.lucasr.dspec.JsonPullReader.STRING;
+
+/**
+ * Parses specs in a single pass, straight from the JSON payload.
+ *
+ * <p>Syntax errors make the whole spec invalid. Malformed elements and values are skipped and
+ * reported along with their positions, the rest of the spec is still used.</p>
+ *
+ * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
+ * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
+ */
+public class SpecParser {
+
+    // JSON Keys
+    private static final String KEY_BASELINE_GRID_CELL_SIZE = "baselineGridCellSize";
+    private static final String KEY_BASELINE_GRID_COLOR = "baselineGridColor";
+
+    private static final String KEY_KEYLINES_COLOR = "keylinesColor";
+    private static final String KEY_KEYLINES = "keylines";
+
+    private static final String KEY_SPACINGS_COLOR = "spacingsColor";
+    private static final String KEY_SPACINGS = "spacings";
+
+    private static final String KEY_OFFSET = "offset";
+    private static final String KEY_SIZE = "size";
+    private static final String KEY_FROM = "from";
+    private static final String KEY_LABEL = "label";
+
+    // Names, matched by index
+    private static final String[] SPEC_KEYS = {
+            KEY_BASELINE_GRID_CELL_SIZE, KEY_BASELINE_GRID_COLOR,
+            KEY_KEYLINES_COLOR, KEY_KEYLINES,
+            KEY_SPACINGS_COLOR, KEY_SPACINGS
+    };
+    private static final int INDEX_BASELINE_GRID_CELL_SIZE = 0;
+    private static final int INDEX_BASELINE_GRID_COLOR = 1;
+    private static final int INDEX_KEYLINES_COLOR = 2;
+    private static final int INDEX_KEYLINES = 3;
+    private static final int INDEX_SPACINGS_COLOR = 4;
+    private static final int INDEX_SPACINGS = 5;
+
+    private static final String[] ELEMENT_KEYS = { KEY_OFFSET, KEY_SIZE, KEY_FROM, KEY_LABEL };
+    private static final int INDEX_OFFSET = 0;
+    private static final int INDEX_SIZE = 1;
+    private static final int INDEX_FROM = 2;
+    private static final int INDEX_LABEL = 3;
+
+    private static final From[] FROM_VALUES = From.values();
+    private static final String[] FROM_NAMES = new String[FROM_VALUES.length];
+
+    static {
+        for (int i = 0; i < FROM_VALUES.length; i++) {
+            FROM_NAMES[i] = FROM_VALUES[i].name();
+        }
+    }
+
+    // Error messages
+    private static final String INVALID_VALUE_ERROR = "Invalid value for '%s', using default";
+    private static final String INVALID_ELEMENT_ERROR = "Invalid %s[%d], skipped: %s";
+
+    /**
+     * Creates a {@link Spec} from a JSON payload.
+     *
+     * @param json   The JSON payload.
+     * @param errors Receives problems with individual elements or values, can be {@code null}.
+     * @return A {@link Spec} object.
+     * @throws SpecParseException If the payload isn't a well-formed JSON object.
+     */
+    public static Spec fromJson(String json, @Nullable List<SpecParseException> errors)
+            throws SpecParseException {
+        JsonPullReader reader = new JsonPullReader(json);
+        Spec.Builder builder = Spec.builder();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName(SPEC_KEYS)) {
+                case INDEX_BASELINE_GRID_CELL_SIZE:
+                    int position = reader.position();
+                    if (reader.peek() != NUMBER) {
+                        invalidValue(reader, KEY_BASELINE_GRID_CELL_SIZE, errors);
+                        builder.baselineGrid(new Grid(DEFAULT_BASELINE_GRID_CELL_SIZE));
+                        break;
+                    }
+                    float cellSize = (float) reader.nextDouble();
+                    if (Grid.isValidCellSize(cellSize)) {
+                        builder.baselineGrid(new Grid(cellSize));
+                    } else {
+                        invalidValue(reader, KEY_BASELINE_GRID_CELL_SIZE, position, errors);
+                        builder.baselineGrid(new Grid(DEFAULT_BASELINE_GRID_CELL_SIZE));
+                    }
+                    break;
+
+                case INDEX_BASELINE_GRID_COLOR:
+                    if (isColor(reader, KEY_BASELINE_GRID_COLOR, errors)) {
+                        builder.baselineGridColor((int) reader.nextLong());
+                    }
+                    break;
+
+                case INDEX_KEYLINES_COLOR:
+                    if (isColor(reader, KEY_KEYLINES_COLOR, errors)) {
+                        builder.keylinesColor((int) reader.nextLong());
+                    }
+                    break;
+
+                case INDEX_KEYLINES:
+                    List<Keyline> keylines = readKeylines(reader, errors);
+                    if (keylines != null) {
+                        builder.keylines(keylines);
+                    }
+                    break;
+
+                case INDEX_SPACINGS_COLOR:
+                    if (isColor(reader, KEY_SPACINGS_COLOR, errors)) {
+                        builder.spacingsColor((int) reader.nextLong());
+                    }
+                    break;
+
+                case INDEX_SPACINGS:
+                    List<Spacing> spacings = readSpacings(reader, errors);
+                    if (spacings != null) {
+                        builder.spacings(spacings);
+                    }
+                    break;
+
+                default:
+                    reader.skipValue(); // Unknown keys are ignored
+                    break;
+            }
+        }
+        reader.endObject();
+        reader.endDocument();
+
+        return builder.build();
+    }
+
+    @Nullable
+    private static List<Keyline> readKeylines(JsonPullReader reader,
+            @Nullable List<SpecParseException> errors) throws SpecParseException {
+        if (reader.peek() == NULL) {
+            reader.skipValue();
+            return null;
+        }
+
+        List<Keyline> keylines = new ArrayList<>();
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            int position = reader.position();
+            String problem = null;
+            float offset = Float.NaN;
+            From from = null;
+            String label = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int key = reader.nextName(ELEMENT_KEYS);
+                int token = reader.peek();
+                if (key == INDEX_OFFSET && token == NUMBER) {
+                    offset = (float) reader.nextDouble();
+                } else if (key == INDEX_FROM && token == STRING) {
+                    from = readFrom(reader);
+                } else if (key == INDEX_LABEL && token == STRING) {
+                    label = reader.nextString();
+                } else {
+                    if (key != -1) {
+                        problem = "unexpected value for '" + ELEMENT_KEYS[key] + "'";
+                    }
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (problem == null && Float.isNaN(offset)) {
+                problem = "missing '" + KEY_OFFSET + "'";
+            } else if (problem == null && from == null) {
+                problem = "missing or invalid '" + KEY_FROM + "'";
+            }
+
+            if (problem == null) {
+                keylines.add(new Keyline(offset, from, label));
+            } else {
+                invalidElement(reader, KEY_KEYLINES, index, problem, position, errors);
+            }
+        }
+        reader.endArray();
+
+        return !keylines.isEmpty() ? keylines : null;
+    }
+
+    @Nullable
+    private static List<Spacing> readSpacings(JsonPullReader reader,
+            @Nullable List<SpecParseException> errors) throws SpecParseException {
+        if (reader.peek() == NULL) {
+            reader.skipValue();
+            return null;
+        }
+
+        List<Spacing> spacings = new ArrayList<>();
+        reader.beginArray();
+        for (int index = 0; reader.hasNext(); index++) {
+            int position = reader.position();
+            String problem = null;
+            float offset = Float.NaN;
+            float size = Float.NaN;
+            From from = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int key = reader.nextName(ELEMENT_KEYS);
+                int token = reader.peek();
+                if (key == INDEX_OFFSET && token == NUMBER) {
+                    offset = (float) reader.nextDouble();
+                } else if (key == INDEX_SIZE && token == NUMBER) {
+                    size = (float) reader.nextDouble();
+                } else if (key == INDEX_FROM && token == STRING) {
+                    from = readFrom(reader);
+                } else {
+                    if (key != -1 && key != INDEX_LABEL) {
+                        problem = "unexpected value for '" + ELEMENT_KEYS[key] + "'";
+                    }
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (problem == null && Float.isNaN(offset)) {
+                problem = "missing '" + KEY_OFFSET + "'";
+            } else if (problem == null && Float.isNaN(size)) {
+                problem = "missing '" + KEY_SIZE + "'";
+            } else if (problem == null && from == null) {
+                problem = "missing or invalid '" + KEY_FROM + "'";
+            }
+
+            if (problem == null) {
+                spacings.add(new Spacing(offset, size, from));
+            } else {
+                invalidElement(reader, KEY_SPACINGS, index, problem, position, errors);
+            }
+        }
+        reader.endArray();
+
+        return !spacings.isEmpty() ? spacings : null;
+    }
+
+    @Nullable
+    private static From readFrom(JsonPullReader reader) throws SpecParseException {
+        int index = reader.nextString(FROM_NAMES);
+        return index != -1 ? FROM_VALUES[index] : null;
+    }
+
+    private static boolean isColor(JsonPullReader reader, String key,
+            @Nullable List<SpecParseException> errors) throws SpecParseException {
+        if (reader.peek() == NUMBER) {
+            return true;
+        }
+        invalidValue(reader, key, errors);
+        return false;
+    }
+
+    private static void invalidValue(JsonPullReader reader, String key,
+            @Nullable List<SpecParseException> errors) throws SpecParseException {
+        int position = reader.position();
+        reader.skipValue();
+        invalidValue(reader, key, position, errors);
+    }
+
+    private static void invalidValue(JsonPullReader reader, String key, int position,
+            @Nullable List<SpecParseException> errors) {
+        if (errors != null) {
+            errors.add(reader.error(String.format(INVALID_VALUE_ERROR, key), position));
+        }
+    }
+
+    private static void invalidElement(JsonPullReader reader, String key, int index,
+            String problem, int position, @Nullable List<SpecParseException> errors) {
+        if (errors != null) {
+            errors.add(reader.error(
+                    String.format(Locale.US, INVALID_ELEMENT_ERROR, key, index, problem), position
+            ));
+        }
+    }
+
+    private SpecParser() {
+        throw new AssertionError("No instances.");
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.spec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class MergedSpecTest {
+
+    private static final String MARGINS = "{\"keylines\": ["
+            + "{\"offset\": 16, \"from\": \"left\"},"
+            + "{\"offset\": 16, \"from\": \"right\"}"
+            + "]}";
+
+    @Test
+    public void merge_dropsDuplicateElements() throws Exception {
+        MergedSpec spec = new MergedSpec();
+        spec.merge(new JSONObject(MARGINS));
+        spec.merge(new JSONObject("{"
+                + "\"keylines\": ["
+                + "  {\"offset\": 16, \"from\": \"LEFT\"},"
+                + "  {\"offset\": 72, \"from\": \"left\"},"
+                + "  {\"offset\": 72, \"from\": \"left\"}"
+                + "],"
+                + "\"spacings\": ["
+                + "  {\"offset\": 0, \"size\": 8, \"from\": \"top\"},"
+                + "  {\"offset\": 0, \"size\": 8, \"from\": \"top\"}"
+                + "]}"));
+
+        assertEquals(3, spec.keylines.size());
+        assertEquals(new MergedSpec.Element(Float.floatToIntBits(72), 0,
+                MergedSpec.FROM_LEFT, null), spec.keylines.get(2));
+        assertEquals(1, spec.spacings.size());
+    }
+
+    @Test
+    public void merge_keepsElementsThatDifferByLabel() throws Exception {
+        MergedSpec spec = new MergedSpec();
+        spec.merge(new JSONObject("{\"keylines\": ["
+                + "{\"offset\": 16, \"from\": \"left\"},"
+                + "{\"offset\": 16, \"from\": \"left\", \"label\": \"margin\"},"
+                + "{\"offset\": 16, \"from\": \"left\", \"label\": null}"
+                + "]}"));
+
+        assertEquals(2, spec.keylines.size());
+        assertEquals("margin", spec.keylines.get(1).label);
+    }
+
+    @Test
+    public void merge_laterValuesOverrideEarlierOnes() throws Exception {
+        MergedSpec spec = new MergedSpec();
+        spec.merge(new JSONObject("{\"baselineGridCellSize\": 8, \"keylinesColor\": 1}"));
+        spec.merge(new JSONObject("{\"baselineGridCellSize\": 4}"));
+
+        assertEquals(4, spec.baselineGridCellSize(), 0);
+        assertEquals(1, spec.values[2]);
+        assertEquals(1 | 1 << 2, spec.flags);
+    }
+
+    @Test
+    public void merge_encodedSpecsAreDeduplicatedToo() throws Exception {
+        MergedSpec margins = new MergedSpec();
+        margins.merge(new JSONObject(MARGINS));
+        byte[] encoded = margins.encode();
+        byte[] twice = new byte[encoded.length * 2];
+        System.arraycopy(encoded, 0, twice, 0, encoded.length);
+        System.arraycopy(encoded, 0, twice, encoded.length, encoded.length);
+
+        MergedSpec spec = new MergedSpec();
+        spec.merge(twice);
+        spec.merge(new JSONObject(MARGINS));
+
+        assertEquals(2, spec.keylines.size());
+        assertArrayEquals(encoded, spec.encode());
+    }
+
+    @Test
+    public void baselineGridCellSize_isZeroWhenUnset() throws Exception {
+        assertEquals(0, new MergedSpec().baselineGridCellSize(), 0);
+    }
+
+    @Test(expected = JSONException.class)
+    public void merge_rejectsInvalidFrom() throws Exception {
+        new MergedSpec().merge(new JSONObject(
+                "{\"keylines\": [{\"offset\": 16, \"from\": \"middle\"}]}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void merge_rejectsTinyCellSizes() throws Exception {
+        new MergedSpec().merge(new JSONObject("{\"baselineGridCellSize\": 0.0000001}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_rejectsUnknownFlags() throws Exception {
+        byte[] encoded = new MergedSpec().encode();
+        encoded[3] = (byte) 0x80;
+
+        new MergedSpec().merge(encoded);
+    }
+
+}
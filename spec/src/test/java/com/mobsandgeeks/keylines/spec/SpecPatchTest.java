@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.keylines.spec;
+
+import org.junit.Test;
+import org.lucasr.dspec.SpecCodec;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecPatchTest {
+
+    @Test
+    public void between_patchesBaseIntoTarget() throws Exception {
+        byte[] base = encode(keylines(0, 40) + ", \"keylinesColor\": 1, \"spacings\": ["
+                + "{\"offset\": 0, \"size\": 8, \"from\": \"top\"},"
+                + "{\"offset\": 8, \"size\": 8, \"from\": \"top\"}]");
+        byte[] target = encode(keylines(1, 41) + ", \"keylinesColor\": 2, \"spacings\": ["
+                + "{\"offset\": 8, \"size\": 8, \"from\": \"top\"}]");
+
+        SpecPatch patch = SpecPatch.between(base, target);
+
+        assertNotNull(patch);
+        assertEquals(SpecCodec.decode(target),
+                SpecCodec.patch(SpecCodec.decode(base), patch.removed, patch.added));
+    }
+
+    @Test
+    public void between_sendsOnlyChangedValues() throws Exception {
+        byte[] base = encode(keylines(0, 40) + ", \"keylinesColor\": 1");
+        byte[] target = encode(keylines(0, 40) + ", \"keylinesColor\": 2");
+
+        SpecPatch patch = SpecPatch.between(base, target);
+
+        assertNotNull(patch);
+        MergedSpec removed = new MergedSpec();
+        removed.merge(patch.removed);
+        MergedSpec added = new MergedSpec();
+        added.merge(patch.added);
+        assertEquals(0, removed.flags);
+        assertTrue(removed.keylines.isEmpty());
+        assertEquals(1 << 2, added.flags);
+        assertEquals(2, added.values[2]);
+        assertTrue(added.keylines.isEmpty());
+    }
+
+    @Test
+    public void between_returnsNullForLargePatches() throws Exception {
+        byte[] base = encode(keylines(0, 4));
+        byte[] target = encode(keylines(4, 8));
+
+        assertNull(SpecPatch.between(base, target));
+    }
+
+    @Test
+    public void between_returnsNullWhenTargetUnsetsValues() throws Exception {
+        byte[] base = encode(keylines(0, 40) + ", \"keylinesColor\": 1");
+        byte[] target = encode(keylines(0, 40));
+
+        assertNull(SpecPatch.between(base, target));
+    }
+
+    @Test
+    public void between_returnsNullForMalformedSpecs() throws Exception {
+        byte[] spec = encode(keylines(0, 40));
+
+        assertNull(SpecPatch.between(new byte[] { 'K', 'L' }, spec));
+        assertNull(SpecPatch.between(spec, new byte[0]));
+    }
+
+    private static byte[] encode(String members) throws Exception {
+        return PrecompiledSpecEncoder.encode("{" + members + "}");
+    }
+
+    /**
+     * @return A "keylines" member with keylines at offsets {@code [from, to)}.
+     */
+    private static String keylines(int from, int to) {
+        StringBuilder builder = new StringBuilder("\"keylines\": [");
+        for (int offset = from; offset < to; offset++) {
+            if (offset > from) {
+                builder.append(", ");
+            }
+            builder.append("{\"offset\": ").append(offset).append(", \"from\": \"left\"}");
+        }
+        return builder.append(']').toString();
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Lucas Rocha {@literal <lucasr@lucasr.org>}
+ * @author Ragunath Jawahar {@literal <rj@mobsandgeeks.com>}
+ */
+public class GridTest {
+
+    @Test
+    public void resolve_drawsLinesStrictlyInsideTheViewport() throws Exception {
+        Grid grid = new Grid(8);
+        float[] out = new float[grid.primitiveCount(2, 48, 40) * 4];
+
+        assertEquals(out.length, grid.resolve(out, 0, 2, 48, 40));
+        assertArrayEquals(new float[] {
+                16, 0, 16, 40,
+                32, 0, 32, 40,
+                0, 16, 48, 16,
+                0, 32, 48, 32
+        }, out, 0);
+    }
+
+    @Test
+    public void primitiveCount_isZeroWithoutCells() throws Exception {
+        assertEquals(0, new Grid(0).primitiveCount(3, 1080, 1920));
+        assertEquals(0, new Grid(-8).primitiveCount(3, 1080, 1920));
+        assertEquals(0, new Grid(Float.NaN).primitiveCount(3, 1080, 1920));
+        assertEquals(0, new Grid(Float.POSITIVE_INFINITY).primitiveCount(3, 1080, 1920));
+    }
+
+    @Test(timeout = 1000)
+    public void primitiveCount_isBoundedForTinyCells() throws Exception {
+        Grid grid = new Grid(0.0000001f);
+        int count = grid.primitiveCount(3, 1080, 1920);
+        float[] out = new float[count * 4];
+
+        assertEquals(2 * 4096, count);
+        assertEquals(out.length, grid.resolve(out, 0, 3, 1080, 1920));
+    }
+
+    @Test
+    public void isValidCellSize_rejectsPositiveSizesBelowTheMinimum() throws Exception {
+        assertTrue(Grid.isValidCellSize(0));
+        assertTrue(Grid.isValidCellSize(-1));
+        assertTrue(Grid.isValidCellSize(Grid.MIN_BASELINE_GRID_CELL_SIZE));
+        assertFalse(Grid.isValidCellSize(0.5f));
+        assertFalse(Grid.isValidCellSize(Float.NaN));
+    }
+
+}
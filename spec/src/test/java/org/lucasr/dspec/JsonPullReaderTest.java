@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class JsonPullReaderTest {
+
+    private static final String[] NAMES = { "offset", "from" };
+
+    @Test
+    public void readsNestedValues() throws Exception {
+        JsonPullReader reader = new JsonPullReader(
+                " {\"offset\": -12.5, \"from\": [\"left\", true, null, {}]}\n");
+
+        reader.beginObject();
+        assertEquals(0, reader.nextName(NAMES));
+        assertEquals(-12.5, reader.nextDouble(), 0);
+        assertEquals(1, reader.nextName(NAMES));
+        reader.beginArray();
+        assertEquals("left", reader.nextString());
+        assertEquals(JsonPullReader.BOOLEAN, reader.peek());
+        reader.skipValue();
+        assertEquals(JsonPullReader.NULL, reader.peek());
+        reader.skipValue();
+        reader.beginObject();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        reader.endObject();
+        reader.endDocument();
+    }
+
+    @Test
+    public void nextName_returnsMinusOneForUnknownNames() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{\"offsets\": 1, \"\": 2}");
+
+        reader.beginObject();
+        assertEquals(-1, reader.nextName(NAMES));
+        reader.skipValue();
+        assertEquals(-1, reader.nextName(NAMES));
+        reader.skipValue();
+        reader.endObject();
+    }
+
+    @Test
+    public void nextName_matchesEscapedNames() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{\"\\u0066rom\": 1}");
+
+        reader.beginObject();
+        assertEquals(1, reader.nextName(NAMES));
+    }
+
+    @Test
+    public void nextString_matchesValuesIgnoringCase() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[\"LEFT\", \"Right\", \"up\"]");
+        String[] values = { "left", "right" };
+
+        reader.beginArray();
+        assertEquals(0, reader.nextString(values));
+        assertEquals(1, reader.nextString(values));
+        assertEquals(-1, reader.nextString(values));
+        reader.endArray();
+    }
+
+    @Test
+    public void nextString_decodesEscapes() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\"]");
+
+        reader.beginArray();
+        assertEquals("a\"b\\c/d\n\t\u00e9", reader.nextString());
+    }
+
+    @Test
+    public void nextDouble_readsNumberForms() throws Exception {
+        JsonPullReader reader = new JsonPullReader(
+                "[0, -0, 42, -7, 1.5, 2e3, 1E-2, 123456789012345678901]");
+
+        reader.beginArray();
+        assertEquals(0, reader.nextDouble(), 0);
+        assertEquals(0, reader.nextDouble(), 0);
+        assertEquals(42, reader.nextDouble(), 0);
+        assertEquals(-7, reader.nextDouble(), 0);
+        assertEquals(1.5, reader.nextDouble(), 0);
+        assertEquals(2000, reader.nextDouble(), 0);
+        assertEquals(0.01, reader.nextDouble(), 0);
+        assertEquals(1.2345678901234568E20, reader.nextDouble(), 0);
+        reader.endArray();
+    }
+
+    @Test
+    public void nextLong_rejectsFractions() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[4294967295, 1.5]");
+
+        reader.beginArray();
+        assertEquals(4294967295L, reader.nextLong());
+        try {
+            reader.nextLong();
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(1, e.getLine());
+            assertEquals(14, e.getColumn());
+        }
+    }
+
+    @Test
+    public void skipValue_skipsNestedStructures() throws Exception {
+        JsonPullReader reader = new JsonPullReader(
+                "{\"a\": {\"b\": [1, \"x\\\"]\", {\"c\": false}]}, \"from\": 3}");
+
+        reader.beginObject();
+        assertEquals(-1, reader.nextName(NAMES));
+        reader.skipValue();
+        assertEquals(1, reader.nextName(NAMES));
+        assertEquals(3, reader.nextLong());
+        reader.endObject();
+        reader.endDocument();
+    }
+
+    @Test
+    public void reportsLineAndColumn() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{\n  \"offset\": 1,\n  \"from\" 2\n}");
+
+        reader.beginObject();
+        reader.nextName(NAMES);
+        reader.nextDouble();
+        reader.nextName(NAMES);
+        try {
+            reader.peek();
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(3, e.getLine());
+            assertEquals(10, e.getColumn());
+            assertEquals(-1, e.getOffset());
+        }
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsEmptyInput() throws Exception {
+        new JsonPullReader("   ").beginObject();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsUnterminatedString() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[\"abc");
+        reader.beginArray();
+        reader.nextString();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsUnterminatedArray() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[1 2]");
+        reader.beginArray();
+        reader.nextDouble();
+        reader.hasNext();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsUnterminatedObject() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{\"offset\": 1");
+        reader.beginObject();
+        reader.nextName(NAMES);
+        reader.nextDouble();
+        reader.hasNext();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsTrailingComma() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[1,]");
+        reader.beginArray();
+        reader.nextDouble();
+        reader.hasNext();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsUnquotedNames() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{offset: 1}");
+        reader.beginObject();
+        reader.hasNext();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsMisspelledLiterals() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[tru]");
+        reader.beginArray();
+        reader.peek();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsLoneMinus() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[-]");
+        reader.beginArray();
+        reader.nextDouble();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsMalformedNumbers() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[1-2]");
+        reader.beginArray();
+        reader.nextDouble();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsMalformedEscapes() throws Exception {
+        JsonPullReader reader = new JsonPullReader("[\"\\u12\"]");
+        reader.beginArray();
+        reader.nextString();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsContentAfterDocument() throws Exception {
+        JsonPullReader reader = new JsonPullReader("{} {}");
+        reader.beginObject();
+        reader.endObject();
+        reader.endDocument();
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void rejectsMismatchedTokens() throws Exception {
+        new JsonPullReader("[]").beginObject();
+    }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import com.mobsandgeeks.keylines.spec.PrecompiledSpecEncoder;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecCodecTest {
+
+    private static final String JSON = "{"
+            + "\"baselineGridCellSize\": 4,"
+            + "\"baselineGridColor\": 1,"
+            + "\"keylinesColor\": 2,"
+            + "\"spacingsColor\": 3,"
+            + "\"keylines\": ["
+            + "  {\"offset\": 16, \"from\": \"left\", \"label\": \"margin\"},"
+            + "  {\"offset\": 16, \"from\": \"right\", \"label\": \"margin\"},"
+            + "  {\"offset\": 72.5, \"from\": \"horizontal_center\", \"label\": \"\u00e9t\u00e9\"},"
+            + "  {\"offset\": -8, \"from\": \"bottom\"}"
+            + "],"
+            + "\"spacings\": [{\"offset\": 0, \"size\": 56, \"from\": \"top\"}]"
+            + "}";
+
+    @Test
+    public void decode_roundTripsEncodedSpecs() throws Exception {
+        Spec spec = SpecParser.fromJson(JSON, null);
+
+        assertEquals(spec, SpecCodec.decode(SpecCodec.encode(spec)));
+    }
+
+    @Test
+    public void decode_roundTripsEmptySpecs() throws Exception {
+        Spec spec = SpecParser.fromJson("{}", null);
+        Spec decoded = SpecCodec.decode(SpecCodec.encode(spec));
+
+        assertEquals(spec, decoded);
+        assertNull(decoded.keylines());
+        assertNull(decoded.spacings());
+    }
+
+    @Test
+    public void encode_internsLabels() throws Exception {
+        Spec spec = Spec.builder()
+                .keylines(Arrays.asList(new Keyline(8, From.LEFT, "margin"),
+                        new Keyline(8, From.RIGHT, "margin")))
+                .build();
+        Spec unlabelled = Spec.builder()
+                .keylines(Arrays.asList(new Keyline(8, From.LEFT, null),
+                        new Keyline(8, From.RIGHT, null)))
+                .build();
+
+        // One label, one length byte and the label itself
+        assertEquals(SpecCodec.encode(unlabelled).length + 1 + "margin".length(),
+                SpecCodec.encode(spec).length);
+    }
+
+    @Test
+    public void decode_readsDirectBuffersFromTheirPosition() throws Exception {
+        Spec spec = SpecParser.fromJson(JSON, null);
+        byte[] bytes = SpecCodec.encode(spec);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3);
+        buffer.put(new byte[3]).put(bytes).position(3);
+
+        assertEquals(spec, SpecCodec.decode(buffer));
+    }
+
+    @Test
+    public void decode_readsSpecsEncodedBySdk() throws Exception {
+        assertEquals(SpecParser.fromJson(JSON, null),
+                SpecCodec.decode(PrecompiledSpecEncoder.encode(JSON)));
+    }
+
+    @Test
+    public void decode_mergesSegmentsInOrder() throws Exception {
+        byte[] base = PrecompiledSpecEncoder.encode("{"
+                + "\"baselineGridCellSize\": 4, \"keylinesColor\": 1,"
+                + "\"keylines\": [{\"offset\": 16, \"from\": \"left\"}]"
+                + "}");
+        byte[] overlay = PrecompiledSpecEncoder.encode("{"
+                + "\"keylinesColor\": 2,"
+                + "\"keylines\": [{\"offset\": 16, \"from\": \"left\", \"label\": \"a\"}],"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}");
+
+        assertEquals(SpecParser.fromJson("{"
+                + "\"baselineGridCellSize\": 4, \"keylinesColor\": 2,"
+                + "\"keylines\": [{\"offset\": 16, \"from\": \"left\"},"
+                + "               {\"offset\": 16, \"from\": \"left\", \"label\": \"a\"}],"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}", null), SpecCodec.decode(concat(base, overlay)));
+    }
+
+    @Test
+    public void decode_reportsOffsetsInLaterSegments() throws Exception {
+        byte[] base = SpecCodec.encode(SpecParser.fromJson(JSON, null));
+        byte[] bytes = concat(base, base);
+        bytes[base.length] = 0;
+
+        try {
+            SpecCodec.decode(bytes);
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(base.length, e.getOffset());
+        }
+    }
+
+    @Test
+    public void decode_rejectsBadMagic() throws Exception {
+        byte[] bytes = SpecCodec.encode(SpecParser.fromJson("{}", null));
+        bytes[0] = '{';
+
+        try {
+            SpecCodec.decode(bytes);
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(0, e.getOffset());
+        }
+    }
+
+    @Test
+    public void decode_rejectsUnknownVersions() throws Exception {
+        byte[] bytes = SpecCodec.encode(SpecParser.fromJson("{}", null));
+        bytes[2] = SpecCodec.VERSION + 1;
+
+        try {
+            SpecCodec.decode(bytes);
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(2, e.getOffset());
+            assertTrue(e.getMessage().contains("version"));
+        }
+    }
+
+    @Test
+    public void decode_rejectsTruncatedSpecs() throws Exception {
+        byte[] bytes = SpecCodec.encode(SpecParser.fromJson(JSON, null));
+
+        for (int length = 0; length < bytes.length; length++) {
+            try {
+                SpecCodec.decode(Arrays.copyOf(bytes, length));
+                fail("Decoded " + length + " of " + bytes.length + " bytes");
+            } catch (SpecParseException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void decode_rejectsHugeCounts() throws Exception {
+        Spec spec = Spec.builder()
+                .keylines(Collections.singletonList(new Keyline(8, From.LEFT, null)))
+                .build();
+        byte[] bytes = SpecCodec.encode(spec);
+        int keylineCount = bytes.length - 1 - 6 - 1; // Before the spacing count and keyline
+        bytes[keylineCount] = (byte) 0x7F;
+
+        try {
+            SpecCodec.decode(bytes);
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(keylineCount, e.getOffset());
+        }
+    }
+
+    @Test
+    public void decode_rejectsTinyCellSizes() throws Exception {
+        Spec spec = Spec.builder().baselineGrid(new Grid(0.0000001f)).build();
+
+        try {
+            SpecCodec.decode(SpecCodec.encode(spec));
+            fail();
+        } catch (SpecParseException e) {
+            assertEquals(4, e.getOffset());
+        }
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void decode_rejectsInvalidFrom() throws Exception {
+        Spec spec = Spec.builder()
+                .spacings(Collections.singletonList(new Spacing(0, 8, From.TOP)))
+                .build();
+        byte[] bytes = SpecCodec.encode(spec);
+        bytes[bytes.length - 1] = (byte) From.values().length;
+
+        SpecCodec.decode(bytes);
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void decode_rejectsInvalidLabelIndices() throws Exception {
+        Spec spec = Spec.builder()
+                .keylines(Collections.singletonList(new Keyline(8, From.LEFT, null)))
+                .build();
+        byte[] bytes = SpecCodec.encode(spec);
+        bytes[bytes.length - 2] = 1; // Label index of the keyline, there are no labels
+
+        SpecCodec.decode(bytes);
+    }
+
+    @Test
+    public void patch_withEmptySetsKeepsTheBase() throws Exception {
+        Spec base = SpecParser.fromJson(JSON, null);
+        byte[] empty = PrecompiledSpecEncoder.encode("{}");
+
+        assertEquals(base, SpecCodec.patch(base, empty, empty));
+    }
+
+    @Test
+    public void patch_removesElementsOneToOne() throws Exception {
+        Spec base = Spec.builder()
+                .keylines(Arrays.asList(new Keyline(8, From.LEFT, null),
+                        new Keyline(16, From.LEFT, null), new Keyline(8, From.LEFT, null)))
+                .spacings(Collections.singletonList(new Spacing(0, 8, From.TOP)))
+                .build();
+        byte[] removed = PrecompiledSpecEncoder.encode("{"
+                + "\"keylines\": [{\"offset\": 8, \"from\": \"left\"}],"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}");
+        Spec patched = SpecCodec.patch(base, removed, PrecompiledSpecEncoder.encode("{}"));
+
+        assertEquals(Arrays.asList(new Keyline(16, From.LEFT, null),
+                new Keyline(8, From.LEFT, null)), patched.keylines());
+        assertNull(patched.spacings());
+    }
+
+    @Test
+    public void patch_appendsAddedElementsAndValues() throws Exception {
+        Spec base = SpecParser.fromJson(
+                "{\"keylinesColor\": 1, \"keylines\": [{\"offset\": 8, \"from\": \"left\"}]}",
+                null);
+        byte[] added = PrecompiledSpecEncoder.encode("{"
+                + "\"baselineGridCellSize\": 4,"
+                + "\"keylines\": [{\"offset\": 8, \"from\": \"left\"}],"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}");
+        Spec patched = SpecCodec.patch(base, PrecompiledSpecEncoder.encode("{}"), added);
+
+        assertEquals(SpecParser.fromJson("{"
+                + "\"baselineGridCellSize\": 4, \"keylinesColor\": 1,"
+                + "\"keylines\": [{\"offset\": 8, \"from\": \"left\"},"
+                + "               {\"offset\": 8, \"from\": \"left\"}],"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}", null), patched);
+    }
+
+    @Test
+    public void patch_rejectsRemovingMoreThanTheBaseHas() throws Exception {
+        Spec base = SpecParser.fromJson("{}", null);
+        byte[] removed = PrecompiledSpecEncoder.encode(
+                "{\"keylines\": [{\"offset\": 8, \"from\": \"left\"}]}");
+
+        try {
+            SpecCodec.patch(base, removed, PrecompiledSpecEncoder.encode("{}"));
+            fail();
+        } catch (SpecParseException e) {
+            assertTrue(e.getMessage().contains("removes 1 of 0"));
+        }
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void patch_rejectsRemovingMissingElements() throws Exception {
+        Spec base = SpecParser.fromJson(JSON, null);
+        byte[] removed = PrecompiledSpecEncoder.encode(
+                "{\"keylines\": [{\"offset\": 8, \"from\": \"top\"}]}");
+
+        SpecCodec.patch(base, removed, PrecompiledSpecEncoder.encode("{}"));
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void patch_rejectsTruncatedPatches() throws Exception {
+        byte[] added = PrecompiledSpecEncoder.encode(
+                "{\"keylines\": [{\"offset\": 8, \"from\": \"left\"}]}");
+
+        SpecCodec.patch(SpecParser.fromJson("{}", null), PrecompiledSpecEncoder.encode("{}"),
+                Arrays.copyOf(added, added.length - 1));
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+}
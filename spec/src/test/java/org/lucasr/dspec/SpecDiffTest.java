@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecDiffTest {
+
+    private static final Keyline LEFT_16 = new Keyline(16, From.LEFT, null);
+    private static final Keyline LEFT_72 = new Keyline(72, From.LEFT, "content");
+    private static final Keyline RIGHT_16 = new Keyline(16, From.RIGHT, null);
+    private static final Spacing TOP_8 = new Spacing(0, 8, From.TOP);
+
+    @Test
+    public void between_equalSpecsIsEmpty() throws Exception {
+        Spec spec = spec(8, 1, Arrays.asList(LEFT_16, LEFT_72));
+        SpecDiff diff = SpecDiff.between(spec, spec(8, 1, Arrays.asList(LEFT_16, LEFT_72)));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(Arrays.<SpecElement>asList(new Grid(8), LEFT_16, LEFT_72, TOP_8),
+                diff.unchanged());
+    }
+
+    @Test
+    public void between_nullSpecsAddsAndRemovesEverything() throws Exception {
+        Spec spec = spec(8, 1, Collections.singletonList(LEFT_16));
+
+        SpecDiff added = SpecDiff.between(null, spec);
+        assertEquals(Arrays.<SpecElement>asList(new Grid(8), LEFT_16, TOP_8), added.added());
+        assertTrue(added.removed().isEmpty());
+
+        SpecDiff removed = SpecDiff.between(spec, null);
+        assertEquals(Arrays.<SpecElement>asList(new Grid(8), LEFT_16, TOP_8), removed.removed());
+        assertTrue(removed.added().isEmpty());
+
+        assertTrue(SpecDiff.between(null, null).isEmpty());
+    }
+
+    @Test
+    public void between_reportsChangedElements() throws Exception {
+        SpecDiff diff = SpecDiff.between(spec(8, 1, Arrays.asList(LEFT_16, LEFT_72)),
+                spec(8, 1, Arrays.asList(LEFT_72, RIGHT_16)));
+
+        assertEquals(Collections.<SpecElement>singletonList(RIGHT_16), diff.added());
+        assertEquals(Collections.<SpecElement>singletonList(LEFT_16), diff.removed());
+        assertEquals(Arrays.<SpecElement>asList(new Grid(8), LEFT_72, TOP_8), diff.unchanged());
+    }
+
+    @Test
+    public void between_matchesDuplicatesOneToOne() throws Exception {
+        SpecDiff diff = SpecDiff.between(spec(8, 1, Arrays.asList(LEFT_16, LEFT_16, LEFT_16)),
+                spec(8, 1, Arrays.asList(LEFT_16, RIGHT_16)));
+
+        assertEquals(Collections.<SpecElement>singletonList(RIGHT_16), diff.added());
+        assertEquals(Arrays.<SpecElement>asList(LEFT_16, LEFT_16), diff.removed());
+    }
+
+    @Test
+    public void between_colorChangeRepaintsTheCategory() throws Exception {
+        SpecDiff diff = SpecDiff.between(spec(8, 1, Arrays.asList(LEFT_16, LEFT_72)),
+                spec(8, 2, Arrays.asList(LEFT_16, LEFT_72)));
+
+        assertEquals(Arrays.<SpecElement>asList(LEFT_16, LEFT_72), diff.added());
+        assertEquals(Arrays.<SpecElement>asList(LEFT_16, LEFT_72), diff.removed());
+        assertEquals(Arrays.<SpecElement>asList(new Grid(8), TOP_8), diff.unchanged());
+    }
+
+    @Test
+    public void between_replacesTheBaselineGrid() throws Exception {
+        SpecDiff diff = SpecDiff.between(spec(8, 1, null), spec(4, 1, null));
+
+        assertEquals(Collections.<SpecElement>singletonList(new Grid(4)), diff.added());
+        assertEquals(Collections.<SpecElement>singletonList(new Grid(8)), diff.removed());
+    }
+
+    @Test
+    public void between_labelsAreCompared() throws Exception {
+        Keyline labelled = new Keyline(16, From.LEFT, "margin");
+        SpecDiff diff = SpecDiff.between(spec(8, 1, Collections.singletonList(LEFT_16)),
+                spec(8, 1, Collections.singletonList(labelled)));
+
+        assertEquals(Collections.<SpecElement>singletonList(labelled), diff.added());
+        assertEquals(Collections.<SpecElement>singletonList(LEFT_16), diff.removed());
+    }
+
+    private static Spec spec(float cellSize, int keylineColor, List<Keyline> keylines) {
+        return Spec.builder()
+                .baselineGrid(new Grid(cellSize))
+                .keylinesColor(keylineColor)
+                .keylines(keylines)
+                .spacings(Collections.singletonList(TOP_8))
+                .build();
+    }
+
+}
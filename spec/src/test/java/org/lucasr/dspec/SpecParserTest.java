@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lucasr.dspec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ragunath Jawahar
+ */
+public class SpecParserTest {
+
+    @Test
+    public void fromJson_readsAllValues() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson("{"
+                + "\"baselineGridCellSize\": 4,"
+                + "\"baselineGridColor\": 4294901760,"
+                + "\"keylinesColor\": 255,"
+                + "\"keylines\": [{\"offset\": 16, \"from\": \"left\", \"label\": \"margin\"},"
+                + "               {\"offset\": 72, \"from\": \"LEFT\"}],"
+                + "\"spacingsColor\": 65280,"
+                + "\"spacings\": [{\"offset\": 0, \"size\": 8, \"from\": \"top\"}]"
+                + "}", errors);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(new Grid(4), spec.baselineGrid());
+        assertEquals(0xFFFF0000, spec.baselineGridColor());
+        assertEquals(0xFF, spec.keylineColor());
+        assertEquals(Arrays.asList(
+                new Keyline(16, From.LEFT, "margin"), new Keyline(72, From.LEFT, null)
+        ), spec.keylines());
+        assertEquals(0xFF00, spec.spacingColor());
+        assertEquals(Collections.singletonList(new Spacing(0, 8, From.TOP)), spec.spacings());
+    }
+
+    @Test
+    public void fromJson_usesDefaultsForAnEmptySpec() throws Exception {
+        Spec spec = SpecParser.fromJson("{}", null);
+
+        assertEquals(new Grid(), spec.baselineGrid());
+        assertEquals(Spec.Builder.DEFAULT_BASELINE_GRID_COLOR, spec.baselineGridColor());
+        assertEquals(Spec.Builder.DEFAULT_KEYLINES_COLOR, spec.keylineColor());
+        assertEquals(Spec.Builder.DEFAULT_SPACINGS_COLOR, spec.spacingColor());
+        assertNull(spec.keylines());
+        assertNull(spec.spacings());
+    }
+
+    @Test
+    public void fromJson_ignoresUnknownKeys() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson(
+                "{\"comment\": {\"a\": [1, 2]}, \"keylines\": null, \"spacings\": []}", errors);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(SpecParser.fromJson("{}", null), spec);
+    }
+
+    @Test
+    public void fromJson_reportsInvalidValues() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson(
+                "{\"baselineGridCellSize\": \"4\",\n \"keylinesColor\": true}", errors);
+
+        assertEquals(new Grid(), spec.baselineGrid());
+        assertEquals(Spec.Builder.DEFAULT_KEYLINES_COLOR, spec.keylineColor());
+        assertEquals(2, errors.size());
+        assertEquals(1, errors.get(0).getLine());
+        assertEquals(26, errors.get(0).getColumn());
+        assertEquals(2, errors.get(1).getLine());
+        assertEquals(19, errors.get(1).getColumn());
+    }
+
+    @Test
+    public void fromJson_reportsTinyCellSizes() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson(
+                "{\"baselineGridCellSize\": 0.0000001, \"keylinesColor\": 1}", errors);
+
+        assertEquals(new Grid(), spec.baselineGrid());
+        assertEquals(1, spec.keylineColor());
+        assertEquals(1, errors.size());
+        assertEquals(26, errors.get(0).getColumn());
+    }
+
+    @Test
+    public void fromJson_acceptsZeroCellSizes() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson("{\"baselineGridCellSize\": 0}", errors);
+
+        assertEquals(Collections.emptyList(), errors);
+        assertEquals(new Grid(0), spec.baselineGrid());
+    }
+
+    @Test
+    public void fromJson_skipsMalformedKeylines() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson("{\"keylines\": ["
+                + "{\"from\": \"left\"},"
+                + "{\"offset\": 8},"
+                + "{\"offset\": 8, \"from\": \"middle\"},"
+                + "{\"offset\": \"8\", \"from\": \"left\"},"
+                + "{\"offset\": 24, \"from\": \"right\", \"unknown\": [1]}"
+                + "]}", errors);
+
+        assertEquals(Collections.singletonList(new Keyline(24, From.RIGHT, null)),
+                spec.keylines());
+        assertEquals(4, errors.size());
+        assertTrue(errors.get(0).getMessage().contains("keylines[0]"));
+        assertTrue(errors.get(0).getMessage().contains("missing 'offset'"));
+        assertTrue(errors.get(1).getMessage().contains("missing or invalid 'from'"));
+        assertTrue(errors.get(2).getMessage().contains("keylines[2]"));
+        assertTrue(errors.get(3).getMessage().contains("unexpected value for 'offset'"));
+    }
+
+    @Test
+    public void fromJson_skipsMalformedSpacings() throws Exception {
+        List<SpecParseException> errors = new ArrayList<>();
+        Spec spec = SpecParser.fromJson("{\"spacings\": ["
+                + "{\"offset\": 8, \"from\": \"top\"},"
+                + "{\"offset\": 8, \"size\": 4, \"from\": \"top\", \"label\": \"ignored\"}"
+                + "]}", errors);
+
+        assertEquals(Collections.singletonList(new Spacing(8, 4, From.TOP)), spec.spacings());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage().contains("missing 'size'"));
+    }
+
+    @Test
+    public void fromJson_dropsAllMalformedElements() throws Exception {
+        Spec spec = SpecParser.fromJson("{\"keylines\": [{}, {}]}", null);
+
+        assertNull(spec.keylines());
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void fromJson_rejectsNonObjects() throws Exception {
+        SpecParser.fromJson("[]", null);
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void fromJson_rejectsTruncatedPayloads() throws Exception {
+        SpecParser.fromJson("{\"keylines\": [{\"offset\": 8, \"from\": \"left\"}", null);
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void fromJson_rejectsNonArrayElements() throws Exception {
+        SpecParser.fromJson("{\"keylines\": {\"offset\": 8}}", null);
+    }
+
+    @Test(expected = SpecParseException.class)
+    public void fromJson_rejectsTrailingContent() throws Exception {
+        SpecParser.fromJson("{} []", null);
+    }
+
+}